@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.benchmark;
+
+import de.zell.android.util.db.DBContract;
+
+/**
+ * Contains the statements of the benchmark table and its full text search
+ * table, which is searched by the search scenario.
+ *
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public abstract class BenchmarkContract extends DBContract {
+
+  /**
+   * The create statement of the benchmark table.
+   */
+  public static final String CREATE_STATEMENT = "CREATE TABLE " + BenchmarkEntity.TABLE_NAME
+          + " ( " + BenchmarkEntity.COLUMN_ID + " INTEGER PRIMARY KEY, "
+          + BenchmarkEntity.COLUMN_NAME + TEXT_TYPE + COMMA_SEP + " "
+          + BenchmarkEntity.COLUMN_VALUE + INT_TYPE + " )";
+
+  /**
+   * The statements which create the full text search table of the
+   * name column.
+   */
+  public static final String[] CREATE_FTS_STATEMENTS
+          = createFTSStatements(BenchmarkEntity.TABLE_NAME, BenchmarkEntity.COLUMN_NAME);
+}
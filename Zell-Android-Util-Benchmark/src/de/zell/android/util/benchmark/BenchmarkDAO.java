@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.benchmark;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import de.zell.android.util.db.DAO;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Represents the DAO of the benchmark, which uses its own scratch database,
+ * so the benchmark never touches the database of an application.
+ * The reads and writes go through the DAO, the executors and the caches
+ * like the reads and writes of an application.
+ *
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class BenchmarkDAO extends DAO {
+
+  /**
+   * The name of the scratch database.
+   */
+  public static final String DATABASE_NAME = "benchmark.db";
+
+  /**
+   * The version of the scratch database.
+   */
+  private static final int DATABASE_VERSION = 1;
+
+  /**
+   * The helper of the scratch database.
+   */
+  private final SQLiteOpenHelper helper;
+
+  /**
+   * Indicates whether the query cache is used.
+   */
+  private final boolean queryCacheEnabled;
+
+  /**
+   * The latch which is counted down after each write, can be null.
+   */
+  private volatile CountDownLatch writes;
+
+  /**
+   * The ctor to create the benchmark DAO.
+   *
+   * @param context the context of the benchmark
+   * @param queryCacheEnabled true if the query cache should be used
+   */
+  public BenchmarkDAO(Context context, boolean queryCacheEnabled) {
+    super(context);
+    this.queryCacheEnabled = queryCacheEnabled;
+    this.helper = new SQLiteOpenHelper(context, DATABASE_NAME, null, DATABASE_VERSION) {
+      @Override
+      public void onCreate(SQLiteDatabase db) {
+        db.execSQL(BenchmarkContract.CREATE_STATEMENT);
+        for (String statement : BenchmarkContract.CREATE_FTS_STATEMENTS) {
+          db.execSQL(statement);
+        }
+      }
+
+      @Override
+      public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+      }
+    };
+  }
+
+  /**
+   * The benchmark inserts its rows in the scenarios, so there is nothing
+   * to update.
+   */
+  @Override
+  public void updateDB() {
+  }
+
+  @Override
+  protected SQLiteOpenHelper getSQLiteOpenHelper() {
+    return helper;
+  }
+
+  @Override
+  protected boolean isQueryCacheEnabled() {
+    return queryCacheEnabled;
+  }
+
+  /**
+   * Sets the latch which is counted down after each write of the DAO,
+   * so the benchmark can wait for the asynchronous writes.
+   *
+   * @param writes the latch or null
+   */
+  public void setWriteLatch(CountDownLatch writes) {
+    this.writes = writes;
+  }
+
+  @Override
+  public void onTablesChanged(String... tables) {
+    super.onTablesChanged(tables);
+    CountDownLatch latch = writes;
+    if (latch != null) {
+      latch.countDown();
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.benchmark;
+
+import de.zell.android.util.db.DBColumn;
+import de.zell.android.util.db.Entity;
+
+/**
+ * Represents the entity of the benchmark table.
+ *
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class BenchmarkEntity implements Entity<Long> {
+
+  /**
+   * The table name of the benchmark entities.
+   */
+  public static final String TABLE_NAME = "benchmark_entity";
+
+  /**
+   * The identifier column of the benchmark table.
+   */
+  public static final String COLUMN_ID = "_id";
+
+  /**
+   * The name column of the benchmark table.
+   */
+  public static final String COLUMN_NAME = "name";
+
+  /**
+   * The value column of the benchmark table.
+   */
+  public static final String COLUMN_VALUE = "value";
+
+  /**
+   * The identifier of the entity.
+   */
+  @DBColumn(name = COLUMN_ID)
+  private long id;
+
+  /**
+   * The name of the entity.
+   */
+  @DBColumn(name = COLUMN_NAME)
+  private String name;
+
+  /**
+   * The value of the entity.
+   */
+  @DBColumn(name = COLUMN_VALUE)
+  private long value;
+
+  @Override
+  public Long getID() {
+    return id;
+  }
+
+  @Override
+  public String getTableName() {
+    return TABLE_NAME;
+  }
+}
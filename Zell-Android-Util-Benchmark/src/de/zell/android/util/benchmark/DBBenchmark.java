@@ -0,0 +1,542 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.benchmark;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.Looper;
+import de.zell.android.util.db.AnnotatedCursorExtractor;
+import de.zell.android.util.db.AsyncDBListReader;
+import de.zell.android.util.db.AsyncDBTransactionWriter;
+import de.zell.android.util.db.DBPriority;
+import de.zell.android.util.db.SQLQuery;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents the benchmark of the database layer. The benchmark measures
+ * the throughput of bulk inserts, paged reads, searches and updates on the
+ * scratch database of the BenchmarkDAO. The scenarios use the public DAO
+ * methods, so the measured time contains the executors, the caches and
+ * the delivery of the results on the main thread, like in an application.
+ *
+ * The DAO methods are called on the main thread and the benchmark waits
+ * for the results, so the benchmark must be run from an instrumentation
+ * or a background thread, never from the main thread.
+ *
+ * @see DBBenchmarkInstrumentation
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class DBBenchmark {
+
+  /**
+   * The insert statement of the benchmark table.
+   */
+  private static final String INSERT_STATEMENT = "INSERT INTO " + BenchmarkEntity.TABLE_NAME
+          + " ( " + BenchmarkEntity.COLUMN_NAME + ", " + BenchmarkEntity.COLUMN_VALUE
+          + " ) VALUES ( ?, ? )";
+
+  /**
+   * The name formula of the inserted rows.
+   */
+  private static final String NAME_FORMULA = "entity %d";
+
+  /**
+   * The search term of the search scenario.
+   */
+  private static final String SEARCH_TERM = "entity 1";
+
+  /**
+   * The error message if a DAO call does not deliver in time.
+   */
+  private static final String TIMEOUT_MSG = "Scenario %s timed out!";
+
+  /**
+   * The error message if a transaction fails.
+   */
+  private static final String TRANSACTION_FAILED_MSG = "Scenario %s failed!";
+
+  /**
+   * The maximum time in seconds which is waited for one DAO call.
+   */
+  private static final long TIMEOUT_SECONDS = 60;
+
+  /**
+   * The default count of the warm up iterations.
+   */
+  public static final int DEFAULT_WARMUP_ITERATIONS = 2;
+
+  /**
+   * The default count of the measured iterations.
+   */
+  public static final int DEFAULT_ITERATIONS = 5;
+
+  /**
+   * The context of the benchmark.
+   */
+  private final Context context;
+
+  /**
+   * The DAO of the scratch database.
+   */
+  private final BenchmarkDAO dao;
+
+  /**
+   * The handler of the main thread, which calls the DAO methods.
+   */
+  private final Handler main = new Handler(Looper.getMainLooper());
+
+  /**
+   * The count of the warm up iterations.
+   */
+  private int warmupIterations = DEFAULT_WARMUP_ITERATIONS;
+
+  /**
+   * The count of the measured iterations.
+   */
+  private int iterations = DEFAULT_ITERATIONS;
+
+  /**
+   * The ctor to create the benchmark.
+   *
+   * @param context the context of the benchmark
+   * @param queryCacheEnabled true if the DAO should use the query cache
+   */
+  public DBBenchmark(Context context, boolean queryCacheEnabled) {
+    if (context == null)
+      throw new IllegalArgumentException();
+
+    this.context = context;
+    this.dao = new BenchmarkDAO(context, queryCacheEnabled);
+  }
+
+  public void setWarmupIterations(int warmupIterations) {
+    this.warmupIterations = warmupIterations;
+  }
+
+  public void setIterations(int iterations) {
+    this.iterations = iterations;
+  }
+
+  /**
+   * Runs all scenarios with the given row count and returns the results.
+   * The scratch database is deleted afterwards.
+   *
+   * @param rows the count of the rows in the benchmark table
+   * @param pageSize the page size of the paged read
+   * @return the results of the scenarios
+   * @throws InterruptedException if the benchmark thread is interrupted
+   */
+  public List<Result> runAll(int rows, int pageSize) throws InterruptedException {
+    List<Result> results = new ArrayList<Result>();
+    try {
+      results.add(measure(new BulkInsert(rows)));
+      results.add(measure(new PagedRead(pageSize)));
+      results.add(measure(new Search(SEARCH_TERM)));
+      results.add(measure(new Update(rows)));
+    } finally {
+      dao.closeConnection();
+      context.deleteDatabase(BenchmarkDAO.DATABASE_NAME);
+    }
+    return results;
+  }
+
+  /**
+   * Measures the given scenario. The scenario is executed for the warm up
+   * iterations without measuring and afterwards for the measured iterations.
+   *
+   * @param scenario the scenario which should be measured
+   * @return the result of the scenario
+   * @throws InterruptedException if the benchmark thread is interrupted
+   */
+  public Result measure(Scenario scenario) throws InterruptedException {
+    for (int i = 0; i < warmupIterations; i++) {
+      scenario.run(this);
+    }
+
+    long operations = 0;
+    long duration = 0;
+    for (int i = 0; i < iterations; i++) {
+      long start = System.nanoTime();
+      operations += scenario.run(this);
+      duration += System.nanoTime() - start;
+    }
+    return new Result(scenario.getName(), operations, duration);
+  }
+
+  /**
+   * Returns the DAO of the scratch database.
+   *
+   * @return the DAO
+   */
+  public BenchmarkDAO getDAO() {
+    return dao;
+  }
+
+  /**
+   * Executes the given call on the main thread and waits until the
+   * given latch is counted down.
+   *
+   * @param name the name of the scenario
+   * @param call the DAO call
+   * @param latch the latch which is counted down by the result of the call
+   * @throws InterruptedException if the benchmark thread is interrupted
+   */
+  public void call(String name, Runnable call, CountDownLatch latch) throws InterruptedException {
+    main.post(call);
+    if (!latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+      throw new IllegalStateException(String.format(TIMEOUT_MSG, name));
+    }
+  }
+
+  /**
+   * Reads the result of the given query with DAO.getSelection.
+   *
+   * @param name the name of the scenario
+   * @param query the query which should be read
+   * @return the count of the read rows
+   * @throws InterruptedException if the benchmark thread is interrupted
+   */
+  public int read(String name, final SQLQuery query) throws InterruptedException {
+    final CountDownLatch latch = new CountDownLatch(1);
+    final int rows[] = new int[1];
+    call(name, new Runnable() {
+      @Override
+      public void run() {
+        dao.getSelection(new AsyncDBListReader.PostExecuteJob() {
+          @Override
+          public void doJob(List result) {
+            rows[0] = result == null ? 0 : result.size();
+            latch.countDown();
+          }
+        }, query);
+      }
+    }, latch);
+    return rows[0];
+  }
+
+  /**
+   * Searches the given term with DAO.search.
+   *
+   * @param name the name of the scenario
+   * @param term the searched term
+   * @return the count of the found rows
+   * @throws InterruptedException if the benchmark thread is interrupted
+   */
+  public int search(String name, final String term) throws InterruptedException {
+    final CountDownLatch latch = new CountDownLatch(1);
+    final int rows[] = new int[1];
+    call(name, new Runnable() {
+      @Override
+      public void run() {
+        dao.search(term, new BenchmarkEntity(), new AsyncDBListReader.PostExecuteJob() {
+          @Override
+          public void doJob(List result) {
+            rows[0] = result == null ? 0 : result.size();
+            latch.countDown();
+          }
+        });
+      }
+    }, latch);
+    return rows[0];
+  }
+
+  /**
+   * Creates the query which selects all columns of the benchmark entities.
+   *
+   * @param selection the selection of the query, can be null
+   * @return the query
+   */
+  private static SQLQuery createQuery(String selection) {
+    return new SQLQuery(selection, new BenchmarkEntity(),
+                        AnnotatedCursorExtractor.getColumns(BenchmarkEntity.class));
+  }
+
+  /**
+   * Represents a benchmark scenario.
+   */
+  public interface Scenario {
+
+    /**
+     * Returns the name of the scenario.
+     *
+     * @return the name
+     */
+    public String getName();
+
+    /**
+     * Executes the scenario once with the DAO of the given benchmark.
+     *
+     * @param benchmark the benchmark
+     * @return the count of the executed operations
+     * @throws InterruptedException if the benchmark thread is interrupted
+     */
+    public int run(DBBenchmark benchmark) throws InterruptedException;
+  }
+
+  /**
+   * Inserts the rows with DAO.executeTransaction and a compiled statement.
+   */
+  public static class BulkInsert implements Scenario {
+
+    /**
+     * The count of the inserted rows.
+     */
+    private final int rows;
+
+    /**
+     * The ctor to create the bulk insert scenario.
+     *
+     * @param rows the count of the inserted rows
+     */
+    public BulkInsert(int rows) {
+      this.rows = rows;
+    }
+
+    @Override
+    public String getName() {
+      return "bulk insert";
+    }
+
+    @Override
+    public int run(final DBBenchmark benchmark) throws InterruptedException {
+      final CountDownLatch latch = new CountDownLatch(1);
+      final boolean successful[] = new boolean[1];
+      benchmark.call(getName(), new Runnable() {
+        @Override
+        public void run() {
+          benchmark.getDAO().executeTransaction(DBPriority.BACKGROUND,
+                                                new AsyncDBTransactionWriter.TransactionJob() {
+            @Override
+            public void doTransaction(SQLiteDatabase db) {
+              db.delete(BenchmarkEntity.TABLE_NAME, null, null);
+              SQLiteStatement insert = db.compileStatement(INSERT_STATEMENT);
+              try {
+                for (int i = 0; i < rows; i++) {
+                  insert.bindString(1, String.format(NAME_FORMULA, i));
+                  insert.bindLong(2, i);
+                  insert.executeInsert();
+                }
+              } finally {
+                insert.close();
+              }
+            }
+
+            @Override
+            public void doPostJob(boolean result) {
+              successful[0] = result;
+              latch.countDown();
+            }
+          }, BenchmarkEntity.TABLE_NAME);
+        }
+      }, latch);
+
+      if (!successful[0]) {
+        throw new IllegalStateException(String.format(TRANSACTION_FAILED_MSG, getName()));
+      }
+      return rows;
+    }
+  }
+
+  /**
+   * Reads the whole table page by page with DAO.getSelection.
+   */
+  public static class PagedRead implements Scenario {
+
+    /**
+     * The page size.
+     */
+    private final int pageSize;
+
+    /**
+     * The ctor to create the paged read scenario.
+     *
+     * @param pageSize the page size
+     */
+    public PagedRead(int pageSize) {
+      if (pageSize <= 0)
+        throw new IllegalArgumentException();
+
+      this.pageSize = pageSize;
+    }
+
+    @Override
+    public String getName() {
+      return "paged read";
+    }
+
+    @Override
+    public int run(DBBenchmark benchmark) throws InterruptedException {
+      SQLQuery query = createQuery(null);
+      query.setOrderBy(BenchmarkEntity.COLUMN_ID);
+      query.setLimit(pageSize);
+      int rows = 0;
+      int page;
+      do {
+        page = benchmark.read(getName(), query);
+        rows += page;
+        query = query.withOffset(rows);
+      } while (page == pageSize);
+      return rows;
+    }
+  }
+
+  /**
+   * Searches the rows in the full text search table of the name column
+   * with DAO.search, which returns the best ranked matches.
+   */
+  public static class Search implements Scenario {
+
+    /**
+     * The searched term.
+     */
+    private final String term;
+
+    /**
+     * The ctor to create the search scenario.
+     *
+     * @param term the searched term, each word is searched as prefix
+     */
+    public Search(String term) {
+      this.term = term;
+    }
+
+    @Override
+    public String getName() {
+      return "search";
+    }
+
+    @Override
+    public int run(DBBenchmark benchmark) throws InterruptedException {
+      return benchmark.search(getName(), term);
+    }
+  }
+
+  /**
+   * Updates the rows one by one with DAO.updateEntity, like the updates
+   * of an application.
+   */
+  public static class Update implements Scenario {
+
+    /**
+     * The count of the updated rows.
+     */
+    private final int rows;
+
+    /**
+     * The ctor to create the update scenario.
+     *
+     * @param rows the count of the updated rows
+     */
+    public Update(int rows) {
+      this.rows = rows;
+    }
+
+    @Override
+    public String getName() {
+      return "update";
+    }
+
+    @Override
+    public int run(DBBenchmark benchmark) throws InterruptedException {
+      final BenchmarkDAO dao = benchmark.getDAO();
+      CountDownLatch latch = new CountDownLatch(rows);
+      dao.setWriteLatch(latch);
+      try {
+        benchmark.call(getName(), new Runnable() {
+          @Override
+          public void run() {
+            for (int i = 1; i <= rows; i++) {
+              SQLQuery query = createQuery(BenchmarkEntity.COLUMN_ID + SQLQuery.SQL_SEARCH_EQUAL);
+              query.setSelectionArgs(Integer.toString(i));
+              query.addValues(BenchmarkEntity.COLUMN_VALUE, Long.toString(System.nanoTime()));
+              dao.updateEntity(query);
+            }
+          }
+        }, latch);
+      } finally {
+        dao.setWriteLatch(null);
+      }
+      return rows;
+    }
+  }
+
+  /**
+   * Represents the result of a measured scenario.
+   */
+  public static class Result {
+
+    /**
+     * The name of the scenario.
+     */
+    private final String name;
+
+    /**
+     * The count of the measured operations.
+     */
+    private final long operations;
+
+    /**
+     * The measured duration in nanoseconds.
+     */
+    private final long durationNanos;
+
+    /**
+     * The ctor to create the result.
+     *
+     * @param name the name of the scenario
+     * @param operations the count of the measured operations
+     * @param durationNanos the measured duration in nanoseconds
+     */
+    public Result(String name, long operations, long durationNanos) {
+      this.name = name;
+      this.operations = operations;
+      this.durationNanos = durationNanos;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getOperations() {
+      return operations;
+    }
+
+    public long getDurationNanos() {
+      return durationNanos;
+    }
+
+    /**
+     * Returns the throughput of the scenario.
+     *
+     * @return the operations per second
+     */
+    public double getOperationsPerSecond() {
+      return durationNanos == 0 ? 0 : operations * 1e9 / durationNanos;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: %d ops in %.1f ms, %.0f ops/s", name, operations,
+                           durationNanos / 1e6, getOperationsPerSecond());
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.benchmark;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.os.Bundle;
+import android.util.Log;
+import java.util.List;
+
+/**
+ * Represents the instrumentation which runs the DBBenchmark and reports the
+ * results. The row count, the page size and the query cache can be set
+ * with the arguments rows, pageSize and cache, for example
+ * adb shell am instrument -w -e rows 5000 -e cache true
+ * de.zell.android.util.benchmark/.DBBenchmarkInstrumentation
+ *
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class DBBenchmarkInstrumentation extends Instrumentation {
+
+  /**
+   * The argument which contains the row count.
+   */
+  public static final String ARG_ROWS = "rows";
+
+  /**
+   * The argument which contains the page size.
+   */
+  public static final String ARG_PAGE_SIZE = "pageSize";
+
+  /**
+   * The argument which enables the query cache.
+   */
+  public static final String ARG_CACHE = "cache";
+
+  /**
+   * The default row count.
+   */
+  public static final int DEFAULT_ROWS = 1000;
+
+  /**
+   * The default page size.
+   */
+  public static final int DEFAULT_PAGE_SIZE = 50;
+
+  /**
+   * The result key of the report, which is printed by the am tool.
+   */
+  private static final String REPORT_KEY = "stream";
+
+  /**
+   * The line separator of the report.
+   */
+  private static final String NEW_LINE = "\n";
+
+  /**
+   * The arguments of the instrumentation.
+   */
+  private Bundle arguments;
+
+  @Override
+  public void onCreate(Bundle arguments) {
+    super.onCreate(arguments);
+    this.arguments = arguments;
+    start();
+  }
+
+  @Override
+  public void onStart() {
+    super.onStart();
+    Bundle results = new Bundle();
+    int resultCode = Activity.RESULT_OK;
+    StringBuilder report = new StringBuilder();
+    try {
+      DBBenchmark benchmark = new DBBenchmark(getTargetContext(),
+                                              Boolean.parseBoolean(getArgument(ARG_CACHE)));
+      List<DBBenchmark.Result> list = benchmark.runAll(getIntArgument(ARG_ROWS, DEFAULT_ROWS),
+                                                       getIntArgument(ARG_PAGE_SIZE, DEFAULT_PAGE_SIZE));
+      for (DBBenchmark.Result result : list) {
+        Log.i(DBBenchmarkInstrumentation.class.getName(), result.toString());
+        report.append(result).append(NEW_LINE);
+      }
+    } catch (InterruptedException ex) {
+      Log.e(DBBenchmarkInstrumentation.class.getName(), InterruptedException.class.getName(), ex);
+      report.append(ex).append(NEW_LINE);
+      resultCode = Activity.RESULT_CANCELED;
+    } catch (RuntimeException ex) {
+      Log.e(DBBenchmarkInstrumentation.class.getName(), RuntimeException.class.getName(), ex);
+      report.append(ex).append(NEW_LINE);
+      resultCode = Activity.RESULT_CANCELED;
+    }
+    results.putString(REPORT_KEY, report.toString());
+    finish(resultCode, results);
+  }
+
+  /**
+   * Returns the given argument of the instrumentation.
+   *
+   * @param key the key of the argument
+   * @return the value or null
+   */
+  private String getArgument(String key) {
+    return arguments == null ? null : arguments.getString(key);
+  }
+
+  /**
+   * Returns the given integer argument of the instrumentation.
+   *
+   * @param key the key of the argument
+   * @param defaultValue the value if the argument is not set
+   * @return the value
+   */
+  private int getIntArgument(String key, int defaultValue) {
+    String value = getArgument(key);
+    return value == null ? defaultValue : Integer.parseInt(value);
+  }
+}
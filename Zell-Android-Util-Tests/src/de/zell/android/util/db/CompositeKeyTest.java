@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import junit.framework.TestCase;
+
+/**
+ * Contains the tests of the CompositeKey ordering and equality, which must
+ * be consistent for numeric components of different types.
+ *
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class CompositeKeyTest extends TestCase {
+
+  /**
+   * Integral components of different types are equal and have the same hash code.
+   */
+  public void testIntegralComponentsAreEqual() {
+    CompositeKey a = new CompositeKey(1, "a");
+    CompositeKey b = new CompositeKey(1L, "a");
+    CompositeKey c = new CompositeKey((short) 1, "a");
+    assertEquals(a, b);
+    assertEquals(b, c);
+    assertEquals(a.hashCode(), b.hashCode());
+    assertEquals(a.hashCode(), c.hashCode());
+    assertEquals(0, a.compareTo(b));
+    assertEquals(Long.valueOf(1), a.get(0));
+  }
+
+  /**
+   * Float and double components with the same value are equal.
+   */
+  public void testFloatingComponentsAreEqual() {
+    CompositeKey a = new CompositeKey(1.5f, "a");
+    CompositeKey b = new CompositeKey(1.5d, "a");
+    assertEquals(a, b);
+    assertEquals(a.hashCode(), b.hashCode());
+    assertEquals(0, a.compareTo(b));
+  }
+
+  /**
+   * A long and a double with the same value are not equal, so they are not ordered as equal.
+   */
+  public void testOrderIsConsistentWithEquals() {
+    CompositeKey a = new CompositeKey(1L, "a");
+    CompositeKey b = new CompositeKey(1.0d, "a");
+    assertFalse(a.equals(b));
+    assertTrue(a.compareTo(b) != 0);
+    assertEquals(Integer.signum(a.compareTo(b)), -Integer.signum(b.compareTo(a)));
+  }
+
+  /**
+   * The keys are ordered component by component, null is the least value.
+   */
+  public void testOrderByComponents() {
+    CompositeKey keys[] = {
+      new CompositeKey(2, "a"),
+      new CompositeKey(1, "b"),
+      new CompositeKey(null, "z"),
+      new CompositeKey(1L, "a"),
+      new CompositeKey(10, "a")
+    };
+    Arrays.sort(keys);
+    assertEquals(new CompositeKey(null, "z"), keys[0]);
+    assertEquals(new CompositeKey(1, "a"), keys[1]);
+    assertEquals(new CompositeKey(1, "b"), keys[2]);
+    assertEquals(new CompositeKey(2, "a"), keys[3]);
+    assertEquals(new CompositeKey(10, "a"), keys[4]);
+  }
+
+  /**
+   * A key is less than a longer key with the same leading components.
+   */
+  public void testLongerKeyIsGreater() {
+    assertTrue(new CompositeKey(1, "a").compareTo(new CompositeKey(1, "a", 0)) < 0);
+  }
+
+  /**
+   * The probe finds the key with the normalized components.
+   */
+  public void testProbeMatchesKey() {
+    Set<Object> keys = new HashSet<Object>();
+    keys.add(new CompositeKey(7L, "a"));
+    CompositeKey.Probe probe = new CompositeKey.Probe();
+    assertTrue(keys.contains(probe.set(7, "a")));
+    assertTrue(keys.contains(probe.set((short) 7, "a")));
+    assertFalse(keys.contains(probe.set(7.0d, "a")));
+    assertFalse(keys.contains(probe.set(7, "b")));
+  }
+}
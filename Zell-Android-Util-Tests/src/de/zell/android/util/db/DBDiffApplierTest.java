@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.content.ContentValues;
+import junit.framework.TestCase;
+
+/**
+ * Contains the tests of the DBDiffApplier content hash, which must depend
+ * on the column names and values of a row, but not on the order in which
+ * the values were put.
+ *
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class DBDiffApplierTest extends TestCase {
+
+  /**
+   * The hash does not depend on the order of the put values.
+   */
+  public void testHashIgnoresInsertionOrder() {
+    ContentValues a = new ContentValues();
+    a.put("a", 1L);
+    a.put("b", "x");
+    ContentValues b = new ContentValues();
+    b.put("b", "x");
+    b.put("a", 1L);
+    assertEquals(DBDiffApplier.hash(a), DBDiffApplier.hash(b));
+  }
+
+  /**
+   * Rows with other values have other hashes.
+   */
+  public void testHashContainsValues() {
+    ContentValues a = new ContentValues();
+    a.put("a", "x");
+    ContentValues b = new ContentValues();
+    b.put("a", "y");
+    assertTrue(DBDiffApplier.hash(a) != DBDiffApplier.hash(b));
+  }
+
+  /**
+   * Rows with other columns have other hashes, also if a column is null.
+   */
+  public void testHashContainsColumns() {
+    ContentValues a = new ContentValues();
+    a.put("a", "x");
+    ContentValues b = new ContentValues();
+    b.put("b", "x");
+    assertTrue(DBDiffApplier.hash(a) != DBDiffApplier.hash(b));
+
+    ContentValues c = new ContentValues(a);
+    c.putNull("b");
+    assertTrue(DBDiffApplier.hash(a) != DBDiffApplier.hash(c));
+  }
+
+  /**
+   * Values can not be shifted into the neighbouring column.
+   */
+  public void testHashSeparatesValues() {
+    ContentValues a = new ContentValues();
+    a.put("a", "xy");
+    a.put("b", "");
+    ContentValues b = new ContentValues();
+    b.put("a", "x");
+    b.put("b", "y");
+    assertTrue(DBDiffApplier.hash(a) != DBDiffApplier.hash(b));
+  }
+
+  /**
+   * Values are hashed like they are stored, a boolean like an integer.
+   */
+  public void testHashStoredTypes() {
+    ContentValues bool = new ContentValues();
+    bool.put("a", true);
+    ContentValues integer = new ContentValues();
+    integer.put("a", 1);
+    ContentValues text = new ContentValues();
+    text.put("a", "1");
+    ContentValues real = new ContentValues();
+    real.put("a", 1.0d);
+    assertEquals(DBDiffApplier.hash(bool), DBDiffApplier.hash(integer));
+    assertTrue(DBDiffApplier.hash(integer) != DBDiffApplier.hash(text));
+    assertTrue(DBDiffApplier.hash(integer) != DBDiffApplier.hash(real));
+  }
+
+  /**
+   * The stored content hash is not part of the hash.
+   */
+  public void testHashIgnoresContentHashColumn() {
+    ContentValues a = new ContentValues();
+    a.put("a", "x");
+    long hash = DBDiffApplier.hash(a);
+    a.put(DBContract.CONTENT_HASH_COLUMN, hash);
+    assertEquals(hash, DBDiffApplier.hash(a));
+  }
+}
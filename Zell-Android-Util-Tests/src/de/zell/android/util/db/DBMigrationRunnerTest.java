@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Contains the tests of the migration ordering of the DBMigrationRunner.
+ *
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class DBMigrationRunnerTest extends TestCase {
+
+  /**
+   * Returns the versions of the given migrations.
+   *
+   * @param migrations the migrations
+   * @return the versions in the order of the migrations
+   */
+  private static int[] versions(List<DBMigration> migrations) {
+    int versions[] = new int[migrations.size()];
+    for (int i = 0; i < versions.length; i++) {
+      versions[i] = migrations.get(i).getVersion();
+    }
+    return versions;
+  }
+
+  /**
+   * Creates a migration runner with migrations to the given versions.
+   *
+   * @param versions the versions of the migrations
+   * @return the migration runner
+   */
+  private static DBMigrationRunner runner(int... versions) {
+    DBMigrationRunner runner = new DBMigrationRunner();
+    for (int version : versions) {
+      runner.addMigrations(DBMigration.of(version));
+    }
+    return runner;
+  }
+
+  /**
+   * The migrations are returned in version order.
+   */
+  public void testMigrationsAreOrdered() {
+    DBMigrationRunner runner = runner(4, 2, 5, 3);
+    assertEquals("[2, 3, 4, 5]", Arrays.toString(versions(runner.getMigrations(1, 5))));
+  }
+
+  /**
+   * Only the migrations after the old and up to the new version are returned.
+   */
+  public void testMigrationsAreBounded() {
+    DBMigrationRunner runner = runner(4, 2, 5, 3);
+    assertEquals("[3, 4]", Arrays.toString(versions(runner.getMigrations(2, 4))));
+    assertEquals(0, runner.getMigrations(5, 5).size());
+  }
+
+  /**
+   * A version without migration fails the upgrade.
+   */
+  public void testMissingMigrationFails() {
+    try {
+      runner(2, 4).getMigrations(1, 4);
+      fail();
+    } catch (IllegalStateException ex) {
+      // expected, version 3 has no migration
+    }
+    try {
+      runner(2, 3).getMigrations(1, 4);
+      fail();
+    } catch (IllegalStateException ex) {
+      // expected, version 4 has no migration
+    }
+  }
+
+  /**
+   * A version with two migrations fails the upgrade.
+   */
+  public void testDuplicateMigrationFails() {
+    try {
+      runner(2, 3, 3).getMigrations(1, 3);
+      fail();
+    } catch (IllegalStateException ex) {
+      // expected, version 3 has two migrations
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ * Contains the round trip tests of the EntitySnapshotCodec.
+ *
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class EntitySnapshotCodecTest extends TestCase {
+
+  /**
+   * Encodes and decodes the given entity.
+   *
+   * @param entity the entity
+   * @return the decoded entity
+   */
+  private static TestEntity roundTrip(TestEntity entity) {
+    EntitySnapshotCodec codec = EntitySnapshotCodec.forClass(TestEntity.class);
+    return (TestEntity) codec.decode(codec.encode(entity));
+  }
+
+  /**
+   * All field types are decoded with the encoded values.
+   */
+  public void testRoundTrip() {
+    TestEntity entity = new TestEntity();
+    entity.id = Long.MAX_VALUE;
+    entity.name = "näme €";
+    entity.count = -3;
+    entity.small = Short.MIN_VALUE;
+    entity.ratio = 0.1d;
+    entity.weight = Float.NaN;
+    entity.flag = true;
+    entity.data = new byte[] {0, 1, -1};
+    entity.optional = 42L;
+
+    TestEntity decoded = roundTrip(entity);
+    assertNotSame(entity, decoded);
+    assertEquals(entity.id, decoded.id);
+    assertEquals(entity.name, decoded.name);
+    assertEquals(entity.count, decoded.count);
+    assertEquals(entity.small, decoded.small);
+    assertEquals(entity.ratio, decoded.ratio);
+    assertTrue(Float.isNaN(decoded.weight));
+    assertEquals(entity.flag, decoded.flag);
+    assertTrue(Arrays.equals(entity.data, decoded.data));
+    assertEquals(entity.optional, decoded.optional);
+  }
+
+  /**
+   * Null values and empty arrays are decoded as they were encoded.
+   */
+  public void testRoundTripNulls() {
+    TestEntity entity = new TestEntity();
+    entity.data = new byte[0];
+
+    TestEntity decoded = roundTrip(entity);
+    assertNull(decoded.name);
+    assertNull(decoded.optional);
+    assertTrue(Arrays.equals(entity.data, decoded.data));
+  }
+
+  /**
+   * A snapshot of another schema is decoded as null.
+   */
+  public void testOtherSchemaIsNotDecoded() {
+    byte snapshot[] = EntitySnapshotCodec.forClass(OtherEntity.class).encode(new OtherEntity());
+    assertNull(EntitySnapshotCodec.forClass(TestEntity.class).decode(snapshot));
+    assertNull(EntitySnapshotCodec.forClass(TestEntity.class).decode(null));
+  }
+
+  /**
+   * Represents an entity with another schema than the test entity.
+   */
+  private static class OtherEntity {
+
+    /**
+     * The identifier of the entity.
+     */
+    @DBColumn(name = TestEntity.COLUMN_ID)
+    private long id;
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import junit.framework.TestCase;
+
+/**
+ * Contains the tests of the SQLQuery cache key, which must be equal for
+ * queries which differ only in whitespace and different for queries 
+ * which select other rows.
+ *
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class SQLQueryTest extends TestCase {
+
+  /**
+   * Creates a query of the test entity with the given selection.
+   *
+   * @param selection the selection
+   * @param args the selection arguments
+   * @return the query
+   */
+  private static SQLQuery query(String selection, String... args) {
+    SQLQuery query = new SQLQuery(selection, new TestEntity(), null);
+    query.setSelectionArgs(args);
+    return query;
+  }
+
+  /**
+   * Queries which differ only in whitespace have the same key.
+   */
+  public void testCacheKeyIgnoresWhitespace() {
+    SQLQuery a = query(" name  =  ? AND\tcount > 1 ", "x");
+    SQLQuery b = query("name = ? AND count > 1", "x");
+    assertEquals(a.getCacheKey(), b.getCacheKey());
+  }
+
+  /**
+   * The whitespace of quoted literals is part of the key.
+   */
+  public void testCacheKeyKeepsQuotedWhitespace() {
+    SQLQuery a = query("name = 'a  b'");
+    SQLQuery b = query("name = 'a b'");
+    assertFalse(a.getCacheKey().equals(b.getCacheKey()));
+  }
+
+  /**
+   * Queries with other selection arguments have other keys.
+   */
+  public void testCacheKeyContainsArguments() {
+    assertFalse(query("name = ?", "a").getCacheKey()
+            .equals(query("name = ?", "b").getCacheKey()));
+  }
+
+  /**
+   * Arguments which contain the separators can not produce the key of other arguments.
+   */
+  public void testCacheKeySeparatesArguments() {
+    SQLQuery a = query("name IN ( ?, ? )", "a", "b");
+    SQLQuery b = query("name IN ( ?, ? )", "a:1:b", null);
+    SQLQuery c = query("name IN ( ?, ? )", "a", "b");
+    assertFalse(a.getCacheKey().equals(b.getCacheKey()));
+    assertEquals(a.getCacheKey(), c.getCacheKey());
+  }
+
+  /**
+   * The normalized order by clause, the limit and the offset are part of the key.
+   */
+  public void testCacheKeyContainsOrderAndLimit() {
+    SQLQuery a = query(null);
+    SQLQuery b = query(null);
+    a.setOrderBy(TestEntity.COLUMN_NAME);
+    b.setOrderBy(TestEntity.COLUMN_NAME + SQLQuery.SQL_DESC_ORDER);
+    assertFalse(a.getCacheKey().equals(b.getCacheKey()));
+
+    b.setOrderBy("  " + TestEntity.COLUMN_NAME);
+    assertEquals(a.getCacheKey(), b.getCacheKey());
+
+    b.setLimit(10);
+    assertFalse(a.getCacheKey().equals(b.getCacheKey()));
+    assertFalse(b.getCacheKey().equals(b.withOffset(10).getCacheKey()));
+  }
+
+  /**
+   * The priority does not change the selected rows, so it is not part of the key.
+   */
+  public void testCacheKeyIgnoresPriority() {
+    SQLQuery a = query("name = ?", "a");
+    SQLQuery b = query("name = ?", "a");
+    b.setPriority(DBPriority.BACKGROUND);
+    assertEquals(a.getCacheKey(), b.getCacheKey());
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+/**
+ * Represents the entity of the tests, which contains a DBColumn annotated
+ * field of each supported type.
+ *
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class TestEntity implements Entity<Long> {
+
+  /**
+   * The table name of the test entities.
+   */
+  public static final String TABLE_NAME = "test_entity";
+
+  /**
+   * The identifier column of the test table.
+   */
+  public static final String COLUMN_ID = "_id";
+
+  /**
+   * The name column of the test table.
+   */
+  public static final String COLUMN_NAME = "name";
+
+  /**
+   * The identifier of the entity.
+   */
+  @DBColumn(name = COLUMN_ID)
+  long id;
+
+  /**
+   * The name of the entity.
+   */
+  @DBColumn(name = COLUMN_NAME)
+  String name;
+
+  /**
+   * The count of the entity.
+   */
+  @DBColumn(name = "count")
+  int count;
+
+  /**
+   * The short value of the entity.
+   */
+  @DBColumn(name = "small")
+  short small;
+
+  /**
+   * The ratio of the entity.
+   */
+  @DBColumn(name = "ratio")
+  double ratio;
+
+  /**
+   * The float value of the entity.
+   */
+  @DBColumn(name = "weight")
+  float weight;
+
+  /**
+   * The flag of the entity.
+   */
+  @DBColumn(name = "flag")
+  boolean flag;
+
+  /**
+   * The binary data of the entity.
+   */
+  @DBColumn(name = "data")
+  byte[] data;
+
+  /**
+   * The optional value of the entity.
+   */
+  @DBColumn(name = "optional")
+  Long optional;
+
+  @Override
+  public Long getID() {
+    return id;
+  }
+
+  @Override
+  public String getTableName() {
+    return TABLE_NAME;
+  }
+}
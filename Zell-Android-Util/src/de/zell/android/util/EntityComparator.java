@@ -16,12 +16,15 @@
  */
 package de.zell.android.util;
 
+import de.zell.android.util.db.CompositeKey;
 import de.zell.android.util.db.Entity;
 import java.util.Comparator;
 
 /**
  * EntityComparator will be used to compare two entities
  * for example to sort a collection of entities.
+ * Entities with a CompositeKey as identifier are compared by the key
+ * order, without converting the identifiers to strings.
  * 
  * @author Christopher Zell <zelldon91@googlemail.com>
  */
@@ -37,7 +40,12 @@ public class EntityComparator implements Comparator<Entity> {
    *          entity is less than, equal to, or greater than the second.
    */
   public int compare(Entity arg0, Entity arg1) {
-    return arg0.getID().toString().compareTo(arg1.getID().toString());
+    Object id0 = arg0.getID();
+    Object id1 = arg1.getID();
+    if (id0 instanceof CompositeKey && id1 instanceof CompositeKey) {
+      return ((CompositeKey) id0).compareTo((CompositeKey) id1);
+    }
+    return id0.toString().compareTo(id1.toString());
   }
   
 }
@@ -85,7 +85,8 @@ public class EntityListAdapter extends BaseAdapter {
 
   /**
    * The given entity list will be used to create a section sparse array and an
-   * array for the entities.
+   * array for the entities. The previous entities and sections are replaced,
+   * so the method can be called each time the entities have changed.
    *
    * @param entities the entities
    */
@@ -95,6 +96,8 @@ public class EntityListAdapter extends BaseAdapter {
     }
 
     Collections.sort(entities, getComparator());
+    this.entities.clear();
+    sections.clear();
 
     int count = 0;
     for (Entity e : entities) {
@@ -107,6 +110,7 @@ public class EntityListAdapter extends BaseAdapter {
       }
       count++;
     }
+    notifyDataSetChanged();
   }
 
   /**
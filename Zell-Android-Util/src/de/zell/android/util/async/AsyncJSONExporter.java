@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.async;
+
+import android.os.AsyncTask;
+import android.util.Log;
+import java.io.IOException;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The AsyncJSONExporter sends the result of a SQL query via POST as
+ * JSON array to the given URL. The rows are read in pages and streamed to
+ * the HTTP output stream, without an intermediate list. The exporter waits
+ * for the network, so it should not be executed on the read or write
+ * executors, but on DBExecutors.getExportExecutor.
+ *
+ * @see QueryJSONProducer
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class AsyncJSONExporter extends AsyncTask<QueryJSONProducer, Void, JSONObject> {
+
+  /**
+   * The content type of the response.
+   */
+  private static final String CONTENT_TYPE = "application/json; charset=utf-8";
+
+  /**
+   * The error log message.
+   */
+  private static final String ERROR_LOG_MSG = "JSON export failed!\nStatuscode %d";
+
+  /**
+   * The url of the web service.
+   */
+  private final String url;
+
+  /**
+   * The job which will be executed after the export.
+   */
+  private final AsyncJSONSender.PostExecuteJob job;
+
+  /**
+   * The throwable which caused the export to fail.
+   */
+  private Throwable error;
+
+  /**
+   * The ctor of the AsyncJSONExporter.
+   *
+   * @param url the url of the web service
+   * @param job the job which will be executed after the export
+   */
+  public AsyncJSONExporter(String url, AsyncJSONSender.PostExecuteJob job) {
+    this.url = url;
+    this.job = job;
+  }
+
+  @Override
+  protected JSONObject doInBackground(QueryJSONProducer... producer) {
+    if (producer == null || producer.length == 0 || producer[0] == null)
+      throw new IllegalArgumentException();
+
+    HttpClient client = new DefaultHttpClient();
+    HttpPost post = new HttpPost(url);
+    post.setEntity(producer[0].createEntity());
+    try {
+      HttpResponse response = client.execute(post);
+      if (response == null || response.getStatusLine().getStatusCode() >= 400) {
+        Log.e(AsyncJSONExporter.class.getName(), String.format(ERROR_LOG_MSG,
+              response == null ? 0 : response.getStatusLine().getStatusCode()));
+        error = new IOException();
+        return null;
+      }
+
+      HttpEntity result = response.getEntity();
+      if (result != null && result.getContentType() != null
+              && result.getContentType().getValue().equals(CONTENT_TYPE)) {
+        return new JSONObject(EntityUtils.toString(result));
+      }
+    } catch (IOException ex) {
+      Log.e(AsyncJSONExporter.class.getName(), IOException.class.getName(), ex);
+      error = ex;
+    } catch (JSONException ex) {
+      Log.e(AsyncJSONExporter.class.getName(), JSONException.class.getName(), ex);
+    }
+    return null;
+  }
+
+  @Override
+  protected void onPostExecute(JSONObject result) {
+    super.onPostExecute(result);
+    if (job == null) {
+      return;
+    }
+
+    if (error != null) {
+      job.doExeptionHandling(error);
+    } else if (result != null) {
+      job.doJob(result);
+    }
+    job.doFinalJob();
+  }
+}
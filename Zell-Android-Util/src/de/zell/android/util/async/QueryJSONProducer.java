@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.async;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import de.zell.android.util.db.CursorExtracting;
+import de.zell.android.util.db.DBConnectionManager;
+import de.zell.android.util.db.DBContract;
+import de.zell.android.util.db.SQLQuery;
+import de.zell.android.util.json.JSONMarshaller;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentProducer;
+import org.apache.http.entity.EntityTemplate;
+import org.apache.http.protocol.HTTP;
+import org.json.JSONObject;
+
+/**
+ * Represents a content producer, which writes the result of a SQL query
+ * as JSON array directly to the HTTP output stream. The rows are read in
+ * pages of PAGE_SIZE rows, the database connection is only held while the
+ * cursor of a page is read and is released before the page is marshalled
+ * with the JSONMarshaller and written. So the export takes constant memory,
+ * independent of the row count, and a slow network does not block a
+ * database connection.
+ *
+ * The pages are selected with a keyset, each page starts after the order
+ * key and rowid of the last written row, so each page reads only its own
+ * rows and rows which are inserted or deleted during the export do not 
+ * shift the following pages. Because of that the query can only be 
+ * ordered by a single column, with or without ASC or DESC, and can not be
+ * grouped. Without an order the rows are exported in rowid order. 
+ *
+ * @see AsyncJSONExporter
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class QueryJSONProducer implements ContentProducer {
+
+  /**
+   * The content type of the written JSON.
+   */
+  private static final String CONTENT_TYPE = "application/json; charset=utf-8";
+
+  /**
+   * The buffer size of the writer in characters.
+   */
+  private static final int BUFFER_SIZE = 8 * 1024;
+
+  /**
+   * The count of rows which are read with one connection.
+   */
+  public static final int PAGE_SIZE = 256;
+
+  /**
+   * The pattern of a supported order, a single column with an optional
+   * direction.
+   */
+  private static final Pattern ORDER_KEY
+          = Pattern.compile("^\\s*(\\w+)(?:\\s+(ASC|DESC))?\\s*$", Pattern.CASE_INSENSITIVE);
+
+  /**
+   * The direction of a descending order.
+   */
+  private static final String DESCENDING = "DESC";
+
+  /**
+   * The rowid column, which orders the rows with the same order key.
+   */
+  private static final String ROWID = "rowid";
+
+  /**
+   * The helper which is used to open the database.
+   */
+  private final SQLiteOpenHelper helper;
+
+  /**
+   * The query which selects the exported rows.
+   */
+  private final SQLQuery query;
+
+  /**
+   * The extractor which extracts the objects from the rows.
+   */
+  private final CursorExtracting extract;
+
+  /**
+   * The column which orders the rows, is null if the rows are
+   * ordered by rowid.
+   */
+  private final String orderKey;
+
+  /**
+   * Indicates whether the rows are ordered descending by the order key.
+   */
+  private final boolean descending;
+
+  /**
+   * The requested columns, which contain the row handle and order key.
+   */
+  private final String[] columns;
+
+  /**
+   * The count of the written rows.
+   */
+  private volatile int rows;
+
+  /**
+   * The ctor to create the JSON content producer.
+   *
+   * @param helper the helper which is used to open the database
+   * @param query the query which selects the exported rows, is ordered by
+   * at most one column and is not grouped
+   * @param extract the extractor which extracts the objects, which contain
+   * JSONElement annotated fields
+   */
+  public QueryJSONProducer(SQLiteOpenHelper helper, SQLQuery query, CursorExtracting extract) {
+    if (helper == null || query == null || extract == null || query.getGroupBy() != null)
+      throw new IllegalArgumentException();
+
+    String orderBy = query.getOrderBy();
+    if (orderBy == null || orderBy.trim().isEmpty()) {
+      orderKey = null;
+      descending = false;
+    } else {
+      Matcher m = ORDER_KEY.matcher(orderBy);
+      if (!m.matches())
+        throw new IllegalArgumentException();
+      orderKey = m.group(1);
+      descending = DESCENDING.equalsIgnoreCase(m.group(2));
+    }
+
+    this.helper = helper;
+    this.query = query;
+    this.extract = extract;
+    this.columns = getPagedColumns(query.getRequestedColumns(), orderKey);
+  }
+
+  /**
+   * Returns the requested columns of the pages, which contain the row
+   * handle and the order key in addition to the requested columns of
+   * the query.
+   *
+   * @param requested the requested columns of the query, null for all columns
+   * @param orderKey the order key or null
+   * @return the requested columns of the pages
+   */
+  private static String[] getPagedColumns(String[] requested, String orderKey) {
+    if (requested == null) {
+      return new String[] {"*", DBContract.ROW_HANDLE_COLUMN};
+    }
+
+    List<String> paged = new ArrayList<String>(Arrays.asList(requested));
+    if (!paged.contains(DBContract.ROW_HANDLE_COLUMN)) {
+      paged.add(DBContract.ROW_HANDLE_COLUMN);
+    }
+    if (orderKey != null && !paged.contains(orderKey) && !paged.contains("*")) {
+      paged.add(orderKey);
+    }
+    return paged.toArray(new String[paged.size()]);
+  }
+
+  /**
+   * Creates the chunked HTTP entity, which is produced by this producer
+   * while it is written. The entity can be written only once.
+   *
+   * @return the HTTP entity
+   */
+  public HttpEntity createEntity() {
+    EntityTemplate entity = new EntityTemplate(this);
+    entity.setContentType(CONTENT_TYPE);
+    entity.setChunked(true);
+    return entity;
+  }
+
+  @Override
+  public void writeTo(OutputStream out) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, HTTP.UTF_8), BUFFER_SIZE);
+    List<Object> page = new ArrayList<Object>(PAGE_SIZE);
+    Keyset key = new Keyset();
+    int limit = query.getLimit();
+    int read = 0;
+    int written = 0;
+    boolean last = false;
+    writer.write('[');
+    while (!last) {
+      int pageSize = limit > 0 ? Math.min(PAGE_SIZE, limit - read) : PAGE_SIZE;
+      if (pageSize <= 0) {
+        break;
+      }
+
+      page.clear();
+      readPage(key, pageSize, page);
+      read += page.size();
+      last = page.size() < pageSize;
+
+      for (Object o : page) {
+        JSONObject json = o == null ? null : JSONMarshaller.marshall(o);
+        if (json != null) {
+          if (written > 0) {
+            writer.write(',');
+          }
+          writer.write(json.toString());
+          written++;
+        }
+      }
+    }
+    writer.write(']');
+    writer.flush();
+    rows = written;
+  }
+
+  /**
+   * Reads the page after the given keyset into the given list and moves
+   * the keyset to the last read row. The first page skips the offset of
+   * the query. The database connection is acquired only for the reading
+   * of the cursor.
+   *
+   * @param key the keyset of the last read row
+   * @param pageSize the maximum count of read rows
+   * @param page the list which gets the extracted objects
+   */
+  private void readPage(Keyset key, int pageSize, List<Object> page) {
+    String selection = query.getSelection();
+    List<String> args = new ArrayList<String>();
+    if (query.getSelectionArgs() != null) {
+      args.addAll(Arrays.asList(query.getSelectionArgs()));
+    }
+    String limit = String.valueOf(pageSize);
+    if (key.read) {
+      String after = getKeysetSelection(key, args);
+      selection = selection == null ? after : "(" + selection + ") AND " + after;
+    } else if (query.getOffset() > 0) {
+      limit = query.getOffset() + "," + pageSize;
+    }
+
+    DBConnectionManager manager = DBConnectionManager.getInstance(helper);
+    SQLiteDatabase db = manager.acquire();
+    try {
+      Cursor c = db.query(query.getSelectedEntity().getTableName(),
+                          columns,
+                          selection,
+                          args.toArray(new String[args.size()]),
+                          null,
+                          null,
+                          orderKey == null ? ROWID
+                                  : orderKey + (descending ? " DESC, " : ", ") + ROWID,
+                          limit);
+      try {
+        int handle = c.getColumnIndexOrThrow(DBContract.ROW_HANDLE);
+        int order = orderKey == null ? -1 : c.getColumnIndexOrThrow(orderKey);
+        while (c.moveToNext()) {
+          page.add(extract.extract(c));
+          key.read = true;
+          key.handle = c.getLong(handle);
+          key.value = order == -1 || c.isNull(order) ? null : c.getString(order);
+        }
+      } finally {
+        c.close();
+      }
+    } finally {
+      manager.release();
+    }
+  }
+
+  /**
+   * Returns the selection of the rows after the given keyset and adds
+   * the arguments of the selection to the given list. SQLite orders
+   * NULL before all values, so a NULL order key is the first key of an
+   * ascending and the last key of a descending order.
+   *
+   * @param key the keyset of the last read row
+   * @param args the list which gets the selection arguments
+   * @return the selection of the following rows
+   */
+  private String getKeysetSelection(Keyset key, List<String> args) {
+    String handle = String.valueOf(key.handle);
+    if (orderKey == null) {
+      args.add(handle);
+      return ROWID + " > ?";
+    }
+
+    if (key.value == null) {
+      args.add(handle);
+      return descending
+              ? "(" + orderKey + " IS NULL AND " + ROWID + " > ?)"
+              : "((" + orderKey + " IS NULL AND " + ROWID + " > ?) OR "
+                      + orderKey + " IS NOT NULL)";
+    }
+
+    args.add(key.value);
+    args.add(key.value);
+    args.add(handle);
+    return "(" + orderKey + (descending ? " < ?" : " > ?") + " OR ("
+            + orderKey + " = ? AND " + ROWID + " > ?)"
+            + (descending ? " OR " + orderKey + " IS NULL)" : ")");
+  }
+
+  /**
+   * Returns the count of the written rows, after the entity was written.
+   *
+   * @return the row count
+   */
+  public int getRowCount() {
+    return rows;
+  }
+
+  /**
+   * Represents the keyset of the last read row, which is the rowid and
+   * the value of the order key.
+   */
+  private static class Keyset {
+
+    /**
+     * Indicates whether a row was read.
+     */
+    private boolean read;
+
+    /**
+     * The rowid of the last read row.
+     */
+    private long handle;
+
+    /**
+     * The value of the order key of the last read row, null if the
+     * value is NULL or the rows are ordered by rowid.
+     */
+    private String value;
+  }
+}
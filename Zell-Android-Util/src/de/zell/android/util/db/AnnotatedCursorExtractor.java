@@ -0,0 +1,662 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.util.Log;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents a cursor extractor which is created for an entity class with
+ * DBColumn annotated fields. The mapping between columns and fields is
+ * created only once per class, the column indexes are resolved only once
+ * per cursor. The values are read with the typed cursor getters and set with
+ * the typed field setters, so primitive fields are not boxed.
+ *
+ * An extractor instance caches the column indexes of the last used cursor,
+ * that means an instance should not be shared between concurrent readers.
+ *
+ * @see DBColumn
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class AnnotatedCursorExtractor implements CursorExtracting {
+
+  /**
+   * The field kinds which are used to choose the typed cursor getter.
+   */
+  static final int KIND_STRING = 0;
+  static final int KIND_LONG = 1;
+  static final int KIND_INT = 2;
+  static final int KIND_SHORT = 3;
+  static final int KIND_DOUBLE = 4;
+  static final int KIND_FLOAT = 5;
+  static final int KIND_BOOLEAN = 6;
+  static final int KIND_BLOB = 7;
+  static final int KIND_BOXED = 8;
+
+  /**
+   * The error log message if the field type is not supported.
+   */
+  private static final String UNSUPPORTED_TYPE_MSG = "Field '%1$s' has an unsupported column type %2$s";
+
+  /**
+   * Contains the already created column mappings for the entity classes.
+   */
+  private static final Map<Class, ColumnMapping> MAPPINGS = new HashMap<Class, ColumnMapping>();
+
+  /**
+   * The column mapping of the entity class.
+   */
+  private final ColumnMapping mapping;
+
+  /**
+   * The cursor for which the column indexes are resolved.
+   */
+  private Cursor cursor;
+
+  /**
+   * The resolved column indexes for the current cursor, -1 if the cursor
+   * does not contain the column.
+   */
+  private int[] indexes;
+
+  /**
+   * The ctor to create an extractor for the given column mapping.
+   *
+   * @param mapping the column mapping of the entity class
+   */
+  private AnnotatedCursorExtractor(ColumnMapping mapping) {
+    this.mapping = mapping;
+  }
+
+  /**
+   * Returns a new extractor for the given entity class. The column mapping
+   * of the class is created on the first call and reused for all following
+   * calls.
+   *
+   * @param c the entity class which contains DBColumn annotated fields
+   * @return the extractor for the given class
+   */
+  public static AnnotatedCursorExtractor forClass(Class c) {
+    return new AnnotatedCursorExtractor(getMapping(c));
+  }
+
+  /**
+   * Returns the column mapping for the given class, creates the mapping
+   * if it does not exist.
+   *
+   * @param c the entity class
+   * @return the corresponding column mapping
+   */
+  static ColumnMapping getMapping(Class c) {
+    synchronized (MAPPINGS) {
+      ColumnMapping m = MAPPINGS.get(c);
+      if (m == null) {
+        m = new ColumnMapping(c);
+        MAPPINGS.put(c, m);
+      }
+      return m;
+    }
+  }
+
+  /**
+   * Returns the column names of the DBColumn annotated fields for the given
+   * class. Can be used as requested columns of a SQLQuery. The lazy columns
+   * are not contained and the row handle column selects the rowid.
+   *
+   * @param c the entity class
+   * @return the annotated column names
+   */
+  public static String[] getColumns(Class c) {
+    return getMapping(c).selectColumns.clone();
+  }
+
+  /**
+   * Sets the value of the field of the given instance, which is annotated
+   * with the given column name.
+   *
+   * @param instance the entity instance
+   * @param column the column name of the annotated field
+   * @param value the new value of the field
+   */
+  public static void setValue(Object instance, String column, Object value) {
+    ColumnMapping m = getMapping(instance.getClass());
+    for (int i = 0; i < m.columns.length; i++) {
+      if (m.columns[i].equals(column)) {
+        try {
+          m.fields[i].set(instance, value);
+        } catch (IllegalAccessException ex) {
+          Log.e(AnnotatedCursorExtractor.class.getName(), IllegalAccessException.class.getName(), ex);
+        } catch (IllegalArgumentException ex) {
+          Log.e(AnnotatedCursorExtractor.class.getName(), IllegalArgumentException.class.getName(), ex);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the value of the field of the given instance, which is annotated
+   * with the given column name.
+   *
+   * @param instance the entity instance
+   * @param column the column name of the annotated field
+   * @return the value of the field or null if no field is annotated with the column
+   */
+  public static Object getValue(Object instance, String column) {
+    ColumnMapping m = getMapping(instance.getClass());
+    for (int i = 0; i < m.columns.length; i++) {
+      if (m.columns[i].equals(column)) {
+        try {
+          return m.fields[i].get(instance);
+        } catch (IllegalAccessException ex) {
+          Log.e(AnnotatedCursorExtractor.class.getName(), IllegalAccessException.class.getName(), ex);
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the values of the DBColumn annotated fields of the given
+   * instance, which can be inserted into the table of the entity.
+   * The lazy columns are contained, the row handle is not contained.
+   *
+   * @param instance the entity instance
+   * @return the values of the annotated fields
+   */
+  public static ContentValues toContentValues(Object instance) {
+    ColumnMapping m = getMapping(instance.getClass());
+    ContentValues values = new ContentValues();
+    for (int i = 0; i < m.columns.length; i++) {
+      if (DBContract.ROW_HANDLE.equals(m.columns[i])) {
+        continue;
+      }
+      try {
+        put(values, m.columns[i], m.fields[i].get(instance));
+      } catch (IllegalAccessException ex) {
+        Log.e(AnnotatedCursorExtractor.class.getName(), IllegalAccessException.class.getName(), ex);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Copies the values of the DBColumn annotated fields from the given
+   * source to the given target instance of the same class. Only the fields
+   * whose column has a resolved index are copied, the other fields were
+   * not read from the cursor.
+   *
+   * @param source the instance which contains the new values
+   * @param target the instance which gets the new values
+   * @param indexes the resolved column indexes, null copies all fields
+   */
+  static void copyValues(Object source, Object target, int[] indexes) {
+    ColumnMapping m = getMapping(source.getClass());
+    for (int i = 0; i < m.fields.length; i++) {
+      if (indexes != null && indexes[i] < 0) {
+        continue;
+      }
+      try {
+        m.fields[i].set(target, m.fields[i].get(source));
+      } catch (IllegalAccessException ex) {
+        Log.e(AnnotatedCursorExtractor.class.getName(), IllegalAccessException.class.getName(), ex);
+      }
+    }
+  }
+
+  /**
+   * Resets the DBColumn annotated fields whose column has no resolved
+   * index to the values of a new instance, so the instance contains no
+   * values of a previously extracted row.
+   *
+   * @param instance the entity instance
+   * @param indexes the resolved column indexes
+   */
+  static void clearUnreadValues(Object instance, int[] indexes) {
+    ColumnMapping m = getMapping(instance.getClass());
+    Object defaults = null;
+    for (int i = 0; i < m.fields.length; i++) {
+      if (indexes == null || indexes[i] >= 0) {
+        continue;
+      }
+      if (defaults == null) {
+        defaults = m.newInstance();
+        if (defaults == null) {
+          return;
+        }
+      }
+      try {
+        m.fields[i].set(instance, m.fields[i].get(defaults));
+      } catch (IllegalAccessException ex) {
+        Log.e(AnnotatedCursorExtractor.class.getName(), IllegalAccessException.class.getName(), ex);
+      }
+    }
+  }
+
+  /**
+   * Computes the hash of the values of the DBColumn annotated fields of
+   * the given instance. Only the fields whose column has a resolved index
+   * are hashed.
+   *
+   * @param instance the entity instance
+   * @param indexes the resolved column indexes, null hashes all fields
+   * @return the hash of the values
+   */
+  static long hashValues(Object instance, int[] indexes) {
+    ColumnMapping m = getMapping(instance.getClass());
+    long h = DBDiffApplier.FNV_OFFSET;
+    for (int i = 0; i < m.fields.length; i++) {
+      if (indexes != null && indexes[i] < 0) {
+        continue;
+      }
+      try {
+        h = DBDiffApplier.hashValue(h, m.fields[i].get(instance));
+      } catch (IllegalAccessException ex) {
+        Log.e(AnnotatedCursorExtractor.class.getName(), IllegalAccessException.class.getName(), ex);
+      }
+    }
+    return h;
+  }
+
+  /**
+   * Creates a copy of the given instance, which contains the values of
+   * all DBColumn annotated fields, including the lazy columns.
+   *
+   * @param source the instance which should be copied
+   * @return the copy or null if the instance can not be created
+   */
+  static Object copy(Object source) {
+    ColumnMapping m = getMapping(source.getClass());
+    Object target = m.newInstance();
+    if (target == null) {
+      return null;
+    }
+
+    for (int i = 0; i < m.fields.length; i++) {
+      try {
+        m.fields[i].set(target, m.fields[i].get(source));
+      } catch (IllegalAccessException ex) {
+        Log.e(AnnotatedCursorExtractor.class.getName(), IllegalAccessException.class.getName(), ex);
+      }
+    }
+    return target;
+  }
+
+  /**
+   * Sets the given values on the DBColumn annotated fields of the given
+   * instance. The values are converted to the field types, like the
+   * values of an update query which are added as strings. Columns without
+   * an annotated field and null values for primitive fields are ignored.
+   *
+   * @param instance the entity instance
+   * @param values the values with the column names as keys
+   */
+  static void applyValues(Object instance, ContentValues values) {
+    ColumnMapping m = getMapping(instance.getClass());
+    for (int i = 0; i < m.columns.length; i++) {
+      String column = m.columns[i];
+      if (!values.containsKey(column)) {
+        continue;
+      }
+
+      Field f = m.fields[i];
+      Class type = f.getType();
+      Object value;
+      if (type == String.class) {
+        value = values.getAsString(column);
+      } else if (type == long.class || type == Long.class) {
+        value = values.getAsLong(column);
+      } else if (type == int.class || type == Integer.class) {
+        value = values.getAsInteger(column);
+      } else if (type == short.class || type == Short.class) {
+        value = values.getAsShort(column);
+      } else if (type == double.class || type == Double.class) {
+        value = values.getAsDouble(column);
+      } else if (type == float.class || type == Float.class) {
+        value = values.getAsFloat(column);
+      } else if (type == boolean.class || type == Boolean.class) {
+        value = toBoolean(values.get(column));
+      } else {
+        value = values.getAsByteArray(column);
+      }
+
+      if (value == null && type.isPrimitive()) {
+        continue;
+      }
+      try {
+        f.set(instance, value);
+      } catch (IllegalAccessException ex) {
+        Log.e(AnnotatedCursorExtractor.class.getName(), IllegalAccessException.class.getName(), ex);
+      }
+    }
+  }
+
+  /**
+   * Converts the given value of a boolean column, which is stored as
+   * integer.
+   *
+   * @param value the value
+   * @return the boolean value or null if the value is null
+   */
+  private static Boolean toBoolean(Object value) {
+    if (value == null || value instanceof Boolean) {
+      return (Boolean) value;
+    } else if (value instanceof Number) {
+      return ((Number) value).intValue() != 0;
+    }
+    String s = value.toString();
+    return "1".equals(s) || Boolean.parseBoolean(s);
+  }
+
+  /**
+   * Puts the given value with the corresponding type into the values.
+   *
+   * @param values the content values
+   * @param column the column of the value
+   * @param value the value
+   */
+  static void put(ContentValues values, String column, Object value) {
+    if (value == null) {
+      values.putNull(column);
+    } else if (value instanceof Long) {
+      values.put(column, (Long) value);
+    } else if (value instanceof Integer) {
+      values.put(column, (Integer) value);
+    } else if (value instanceof Short) {
+      values.put(column, (Short) value);
+    } else if (value instanceof Double) {
+      values.put(column, (Double) value);
+    } else if (value instanceof Float) {
+      values.put(column, (Float) value);
+    } else if (value instanceof Boolean) {
+      values.put(column, (Boolean) value);
+    } else if (value instanceof byte[]) {
+      values.put(column, (byte[]) value);
+    } else {
+      values.put(column, value.toString());
+    }
+  }
+
+  @Override
+  public Object extract(Cursor c) {
+    if (c != cursor) {
+      resolveIndexes(c);
+    }
+
+    Object instance = mapping.newInstance();
+    if (instance != null) {
+      fill(instance, c);
+    }
+    return instance;
+  }
+
+  /**
+   * Fills the given instance with the values of the current cursor row.
+   * Only the fields of the columns which are contained in the cursor
+   * are changed.
+   *
+   * @param instance the instance which gets the values
+   * @param c the cursor which points to the row
+   */
+  public void extractInto(Object instance, Cursor c) {
+    if (c != cursor) {
+      resolveIndexes(c);
+    }
+    fill(instance, c);
+  }
+
+  /**
+   * Returns the column indexes which are resolved for the last extracted
+   * cursor, -1 if the cursor does not contain the column. The returned
+   * array is not changed, a new cursor resolves a new array.
+   *
+   * @return the resolved column indexes or null if nothing was extracted
+   */
+  int[] getResolvedIndexes() {
+    return indexes;
+  }
+
+  /**
+   * Resolves the column indexes of the mapped columns for the given cursor.
+   *
+   * @param c the cursor
+   */
+  private void resolveIndexes(Cursor c) {
+    final int len = mapping.columns.length;
+    indexes = new int[len];
+    for (int i = 0; i < len; i++) {
+      indexes[i] = c.getColumnIndex(mapping.columns[i]);
+    }
+    cursor = c;
+  }
+
+  /**
+   * Fills the fields of the given instance with the values of the current
+   * cursor row.
+   *
+   * @param instance the instance which gets the values
+   * @param c the cursor which points to the row
+   */
+  private void fill(Object instance, Cursor c) {
+    final int len = indexes.length;
+    for (int i = 0; i < len; i++) {
+      int index = indexes[i];
+      if (index < 0) {
+        continue;
+      }
+
+      Field f = mapping.fields[i];
+      try {
+        switch (mapping.kinds[i]) {
+          case KIND_STRING:
+            f.set(instance, c.getString(index));
+            break;
+          case KIND_LONG:
+            f.setLong(instance, c.getLong(index));
+            break;
+          case KIND_INT:
+            f.setInt(instance, c.getInt(index));
+            break;
+          case KIND_SHORT:
+            f.setShort(instance, c.getShort(index));
+            break;
+          case KIND_DOUBLE:
+            f.setDouble(instance, c.getDouble(index));
+            break;
+          case KIND_FLOAT:
+            f.setFloat(instance, c.getFloat(index));
+            break;
+          case KIND_BOOLEAN:
+            f.setBoolean(instance, c.getInt(index) != 0);
+            break;
+          case KIND_BLOB:
+            f.set(instance, c.getBlob(index));
+            break;
+          default:
+            f.set(instance, c.isNull(index) ? null : readBoxed(f.getType(), c, index));
+        }
+      } catch (IllegalAccessException ex) {
+        Log.e(AnnotatedCursorExtractor.class.getName(), IllegalAccessException.class.getName(), ex);
+      }
+    }
+  }
+
+  /**
+   * Reads the value of a boxed primitive field from the cursor.
+   *
+   * @param type the wrapper type of the field
+   * @param c the cursor
+   * @param index the column index
+   * @return the boxed value
+   */
+  private static Object readBoxed(Class type, Cursor c, int index) {
+    if (type == Long.class) {
+      return c.getLong(index);
+    } else if (type == Integer.class) {
+      return c.getInt(index);
+    } else if (type == Short.class) {
+      return c.getShort(index);
+    } else if (type == Double.class) {
+      return c.getDouble(index);
+    } else if (type == Float.class) {
+      return c.getFloat(index);
+    } else {
+      return c.getInt(index) != 0;
+    }
+  }
+
+  /**
+   * Returns the kind of the given field type, -1 if the type is not supported.
+   *
+   * @param type the field type
+   * @return the kind
+   */
+  private static int getKind(Class type) {
+    if (type == String.class) {
+      return KIND_STRING;
+    } else if (type == long.class) {
+      return KIND_LONG;
+    } else if (type == int.class) {
+      return KIND_INT;
+    } else if (type == short.class) {
+      return KIND_SHORT;
+    } else if (type == double.class) {
+      return KIND_DOUBLE;
+    } else if (type == float.class) {
+      return KIND_FLOAT;
+    } else if (type == boolean.class) {
+      return KIND_BOOLEAN;
+    } else if (type == byte[].class) {
+      return KIND_BLOB;
+    } else if (type == Long.class || type == Integer.class || type == Short.class
+            || type == Double.class || type == Float.class || type == Boolean.class) {
+      return KIND_BOXED;
+    }
+    return -1;
+  }
+
+  /**
+   * Represents the column mapping of an entity class, which contains the
+   * annotated fields, the corresponding column names and field kinds.
+   */
+  static class ColumnMapping {
+
+    /**
+     * The no argument ctor of the entity class.
+     */
+    private Constructor ctor;
+
+    /**
+     * The annotated fields.
+     */
+    final Field[] fields;
+
+    /**
+     * The column names of the annotated fields.
+     */
+    final String[] columns;
+
+    /**
+     * The kinds of the annotated fields.
+     */
+    final int[] kinds;
+
+    /**
+     * The columns which are requested for the class, without the lazy columns.
+     */
+    private final String[] selectColumns;
+
+    /**
+     * The ctor to create the column mapping for the given class.
+     *
+     * @param c the entity class
+     */
+    public ColumnMapping(Class c) {
+      List<Field> annotated = new ArrayList<Field>();
+      Class current = c;
+      while (current != null && current != Object.class) {
+        for (Field f : current.getDeclaredFields()) {
+          DBColumn column = f.getAnnotation(DBColumn.class);
+          if (column != null && !Modifier.isStatic(f.getModifiers())) {
+            if (getKind(f.getType()) < 0) {
+              Log.e(AnnotatedCursorExtractor.class.getName(),
+                    String.format(UNSUPPORTED_TYPE_MSG, f.getName(), f.getType()));
+            } else {
+              f.setAccessible(true);
+              annotated.add(f);
+            }
+          }
+        }
+        current = current.getSuperclass();
+      }
+
+      final int len = annotated.size();
+      fields = annotated.toArray(new Field[len]);
+      columns = new String[len];
+      kinds = new int[len];
+      List<String> select = new ArrayList<String>(len);
+      for (int i = 0; i < len; i++) {
+        DBColumn column = fields[i].getAnnotation(DBColumn.class);
+        columns[i] = column.name();
+        kinds[i] = getKind(fields[i].getType());
+        if (DBContract.ROW_HANDLE.equals(columns[i])) {
+          select.add(DBContract.ROW_HANDLE_COLUMN);
+        } else if (!column.lazy()) {
+          select.add(columns[i]);
+        }
+      }
+      selectColumns = select.toArray(new String[select.size()]);
+
+      try {
+        ctor = c.getDeclaredConstructor();
+        ctor.setAccessible(true);
+      } catch (NoSuchMethodException ex) {
+        Log.e(AnnotatedCursorExtractor.class.getName(), NoSuchMethodException.class.getName(), ex);
+      }
+    }
+
+    /**
+     * Creates a new instance of the entity class.
+     *
+     * @return the new instance or null if the creation failed
+     */
+    public Object newInstance() {
+      if (ctor == null) {
+        return null;
+      }
+
+      try {
+        return ctor.newInstance();
+      } catch (InstantiationException ex) {
+        Log.e(AnnotatedCursorExtractor.class.getName(), InstantiationException.class.getName(), ex);
+      } catch (IllegalAccessException ex) {
+        Log.e(AnnotatedCursorExtractor.class.getName(), IllegalAccessException.class.getName(), ex);
+      } catch (InvocationTargetException ex) {
+        Log.e(AnnotatedCursorExtractor.class.getName(), InvocationTargetException.class.getName(), ex);
+      }
+      return null;
+    }
+  }
+}
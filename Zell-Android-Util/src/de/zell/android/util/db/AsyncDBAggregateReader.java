@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.AsyncTask;
+
+/**
+ * Represents the AsyncDBAggregateReader which executes asynchronous a SQL
+ * statement, which returns one real value, like an average or the sum of
+ * a real column. In contrast to the AsyncDBScalarReader the value is read 
+ * via a cursor, so the fraction is kept and a NULL result, like the 
+ * aggregate over no rows, is delivered as null.
+ *
+ * @see SQLQuery#getAggregateStatement(String)
+ * @see AsyncDBScalarReader
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class AsyncDBAggregateReader extends AsyncTask<SQLiteOpenHelper, Void, Double> {
+
+  /**
+   * The SQL statement which returns the value.
+   */
+  private final String sql;
+
+  /**
+   * The arguments of the SQL statement.
+   */
+  private final String[] args;
+
+  /**
+   * The job which will be executed after the statement was executed.
+   */
+  private final PostExecuteJob postJob;
+
+  /**
+   * The ctor to create the AsyncDBAggregateReader.
+   *
+   * @param sql the SQL statement which returns the value
+   * @param args the arguments of the SQL statement
+   * @param postJob the job which will be executed after the statement was executed
+   */
+  public AsyncDBAggregateReader(String sql, String[] args, PostExecuteJob postJob) {
+    this.sql = sql;
+    this.args = args;
+    this.postJob = postJob;
+  }
+
+  @Override
+  protected Double doInBackground(SQLiteOpenHelper... helper) {
+    if (helper == null || helper.length == 0 || helper[0] == null)
+      throw new IllegalArgumentException();
+
+    DBConnectionManager manager = DBConnectionManager.getInstance(helper[0]);
+    SQLiteDatabase db = manager.acquire();
+    try {
+      Cursor c = db.rawQuery(sql, args);
+      try {
+        return c.moveToFirst() && !c.isNull(0) ? c.getDouble(0) : null;
+      } finally {
+        c.close();
+      }
+    } finally {
+      manager.release();
+    }
+  }
+
+  @Override
+  protected void onPostExecute(Double result) {
+    super.onPostExecute(result);
+    postJob.doJob(result);
+  }
+
+  /**
+   * Represents the PostExecuteJob which will be used to execute a job/task after
+   * the statement was executed.
+   */
+  public interface PostExecuteJob {
+
+    /**
+     * The job which will be executed.
+     *
+     * @param result the value which was returned by the statement, 
+     * null if the value is NULL
+     */
+    public void doJob(Double result);
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.AsyncTask;
+
+/**
+ * Represents the AsyncDBColumnReader which reads asynchronous the numeric
+ * result of a SQL query into primitive columns. In contrast to the
+ * AsyncDBListReader no object is created per row, which should be used
+ * for large numeric results like chart data. The columns are sized with
+ * the row count of the cursor, so they are allocated once and do not grow
+ * while the rows are read.
+ *
+ * @see NumericColumns
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class AsyncDBColumnReader extends AsyncTask<SQLiteOpenHelper, Void, NumericColumns> {
+
+  /**
+   * Contains all necessary informations for the SQL request.
+   */
+  private final SQLQuery query;
+
+  /**
+   * The types of the requested columns.
+   */
+  private final int[] types;
+
+  /**
+   * The job which will be executed after the SQL query was executed.
+   */
+  private final PostExecuteJob postJob;
+
+  /**
+   * The ctor to create the AsyncDBColumnReader.
+   *
+   * @param query the query, the requested columns must be numeric
+   * @param types the types of the requested columns, see NumericColumns
+   * @param postJob the job which will be executed after the SQL query was executed
+   */
+  public AsyncDBColumnReader(SQLQuery query, int[] types, PostExecuteJob postJob) {
+    if (query == null || query.getRequestedColumns() == null
+            || types == null || types.length != query.getRequestedColumns().length)
+      throw new IllegalArgumentException();
+
+    this.query = query;
+    this.types = types;
+    this.postJob = postJob;
+  }
+
+  @Override
+  protected NumericColumns doInBackground(SQLiteOpenHelper... helper) {
+    if (helper == null || helper.length == 0 || helper[0] == null)
+      throw new IllegalArgumentException();
+
+    DBConnectionManager manager = DBConnectionManager.getInstance(helper[0]);
+    SQLiteDatabase db = manager.acquire();
+    DBQueryMonitor monitor = DBQueryMonitor.getInstance();
+    long start = System.nanoTime();
+    try {
+      Cursor c = db.query(query.getSelectedEntity().getTableName(),
+                          query.getRequestedColumns(),
+                          query.getSelection(),
+                          query.getSelectionArgs(),
+                          query.getGroupBy(),
+                          query.getHaving(),
+                          query.getOrderBy(),
+                          query.getLimitClause());
+      NumericColumns columns;
+      try {
+        columns = new NumericColumns(c.getCount(), types);
+        while (c.moveToNext() && !isCancelled()) {
+          columns.read(c);
+        }
+      } finally {
+        c.close();
+      }
+
+      if (monitor.isEnabled()) {
+        monitor.traceRead(db, query, System.nanoTime() - start, columns.size());
+      }
+      return columns;
+    } finally {
+      manager.release();
+    }
+  }
+
+  @Override
+  protected void onPostExecute(NumericColumns result) {
+    super.onPostExecute(result);
+    postJob.doJob(result);
+  }
+
+  /**
+   * Represents the PostExecuteJob which will be used to execute a job/task after
+   * the SQL query was executed.
+   */
+  public interface PostExecuteJob {
+
+    /**
+     * The job which will be executed.
+     *
+     * @param result the columns which contain the result of the SQL query
+     */
+    public void doJob(NumericColumns result);
+  }
+}
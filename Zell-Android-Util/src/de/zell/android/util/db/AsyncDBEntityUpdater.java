@@ -16,14 +16,22 @@
  */
 package de.zell.android.util.db;
 
+import android.content.ContentValues;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.os.AsyncTask;
+import java.util.Map;
 
 /**
  * Represents the asynchronous entity updater which updates the given entity
  * on the database.
  * 
+ * With dirty tracking the updater checks before the update whether a 
+ * selected row differs from the new values. If no row differs, the update
+ * is dropped and the listener is not notified, so the no-op update costs
+ * no write transaction and no journal I/O.
+ * 
  * @author Christopher Zell <zelldon91@googlemail.com>
  */
 public class AsyncDBEntityUpdater extends AsyncTask<SQLiteOpenHelper, Void, Integer> {
@@ -33,6 +41,46 @@ public class AsyncDBEntityUpdater extends AsyncTask<SQLiteOpenHelper, Void, Inte
    */
   private final SQLQuery query;
   
+  /**
+   * The listener which is notified after the update.
+   */
+  private final TableChangeListener listener;
+  
+  /**
+   * The statistics which count the executed and dropped updates, is null
+   * if the dirty tracking is disabled.
+   */
+  private final UpdateStatistics statistics;
+  
+  /**
+   * The overlay which contains the values of the pending update, can be null.
+   */
+  private final PendingWriteOverlay overlay;
+  
+  /**
+   * The statement formula which checks whether a selected row differs.
+   */
+  private static final String DIRTY_STATEMENT = "SELECT EXISTS ( SELECT 1 FROM %s WHERE %s NOT ( %s ) LIMIT 1 )";
+  
+  /**
+   * The selection formula, which is followed by the dirty condition.
+   */
+  private static final String SELECTION_PREFIX = "( %s ) AND";
+  
+  /**
+   * The condition which compares a column with a value.
+   */
+  private static final String COLUMN_IS_VALUE = " IS ?";
+  
+  /**
+   * The condition which compares a column with null.
+   */
+  private static final String COLUMN_IS_NULL = " IS NULL";
+  
+  /**
+   * The SQL AND operator.
+   */
+  private static final String SQL_AND = " AND ";
 
   /**
    * The ctor which creates the asynchronous entity updater.
@@ -40,7 +88,51 @@ public class AsyncDBEntityUpdater extends AsyncTask<SQLiteOpenHelper, Void, Inte
    * @param query   the SQL query which contains the update statement.
    */
   public AsyncDBEntityUpdater(SQLQuery query) {
+    this(query, null);
+  }
+
+  /**
+   * The ctor which creates the asynchronous entity updater, which notifies
+   * the given listener after the update.
+   * 
+   * @param query     the SQL query which contains the update statement.
+   * @param listener  the listener which is notified after the update, can be null
+   */
+  public AsyncDBEntityUpdater(SQLQuery query, TableChangeListener listener) {
+    this(query, listener, null);
+  }
+
+  /**
+   * The ctor which creates the asynchronous entity updater with dirty 
+   * tracking, which drops the update if no selected row would be changed.
+   * 
+   * @param query       the SQL query which contains the update statement.
+   * @param listener    the listener which is notified after the update, can be null
+   * @param statistics  the statistics which count the executed and dropped updates,
+   *                    null disables the dirty tracking
+   */
+  public AsyncDBEntityUpdater(SQLQuery query, TableChangeListener listener,
+                              UpdateStatistics statistics) {
+    this(query, listener, statistics, null);
+  }
+
+  /**
+   * The ctor which creates the asynchronous entity updater, which removes
+   * the values of the update from the given overlay after the update was
+   * written or dropped.
+   * 
+   * @param query       the SQL query which contains the update statement.
+   * @param listener    the listener which is notified after the update, can be null
+   * @param statistics  the statistics which count the executed and dropped updates,
+   *                    null disables the dirty tracking
+   * @param overlay     the overlay which contains the values of the update, can be null
+   */
+  public AsyncDBEntityUpdater(SQLQuery query, TableChangeListener listener,
+                              UpdateStatistics statistics, PendingWriteOverlay overlay) {
     this.query = query;
+    this.listener = listener;
+    this.statistics = statistics;
+    this.overlay = overlay;
   }
   
   @Override
@@ -48,8 +140,103 @@ public class AsyncDBEntityUpdater extends AsyncTask<SQLiteOpenHelper, Void, Inte
     if (helper == null || helper.length == 0 || helper[0] == null)
       throw new IllegalArgumentException();
     
-    SQLiteDatabase db = helper[0].getWritableDatabase();
-    return db.update(query.getSelectedEntity().getTableName(), query.getValues(),
-                    query.getSelection(), query.getSelectionArgs());
+    String table = query.getSelectedEntity().getTableName();
+    DBConnectionManager manager = DBConnectionManager.getInstance(helper[0]);
+    SQLiteDatabase db = manager.acquire();
+    DBQueryMonitor monitor = DBQueryMonitor.getInstance();
+    boolean changed = false;
+    try {
+      if (statistics != null && !isDirty(db, table)) {
+        statistics.countDropped();
+        return 0;
+      }
+      
+      changed = true;
+      long start = System.nanoTime();
+      int rows = db.update(table, query.getValues(),
+                           query.getSelection(), query.getSelectionArgs());
+      if (monitor.isEnabled()) {
+        monitor.traceUpdate(db, query, System.nanoTime() - start, rows);
+      }
+      if (statistics != null) {
+        statistics.countExecuted();
+      }
+      return rows;
+    } finally {
+      manager.release();
+      if (overlay != null) {
+        overlay.remove(query);
+      }
+      if (changed && listener != null) {
+        listener.onTablesChanged(table);
+      }
+    }
+  }
+  
+  /**
+   * Checks whether a selected row differs from the new values of the query.
+   * 
+   * @param db the database
+   * @param table the updated table
+   * @return true if the update would change a row, false otherwise
+   */
+  private boolean isDirty(SQLiteDatabase db, String table) {
+    ContentValues values = query.getValues();
+    if (values == null || values.size() == 0) {
+      return true;
+    }
+    
+    StringBuilder unchanged = new StringBuilder();
+    for (Map.Entry<String, Object> entry : values.valueSet()) {
+      if (unchanged.length() > 0) {
+        unchanged.append(SQL_AND);
+      }
+      unchanged.append(entry.getKey())
+               .append(entry.getValue() == null ? COLUMN_IS_NULL : COLUMN_IS_VALUE);
+    }
+    
+    String selection = query.getSelection();
+    String sql = String.format(DIRTY_STATEMENT, table,
+                               selection == null ? "" : String.format(SELECTION_PREFIX, selection),
+                               unchanged);
+    SQLiteStatement statement = db.compileStatement(sql);
+    try {
+      int index = 1;
+      if (selection != null && query.getSelectionArgs() != null) {
+        for (String arg : query.getSelectionArgs()) {
+          statement.bindString(index++, arg);
+        }
+      }
+      for (Map.Entry<String, Object> entry : values.valueSet()) {
+        Object value = entry.getValue();
+        if (value != null) {
+          bind(statement, index++, value);
+        }
+      }
+      return statement.simpleQueryForLong() != 0;
+    } finally {
+      statement.close();
+    }
+  }
+  
+  /**
+   * Binds the given value with the corresponding type to the statement.
+   * 
+   * @param statement the statement
+   * @param index the index of the argument
+   * @param value the value which is bound
+   */
+  private static void bind(SQLiteStatement statement, int index, Object value) {
+    if (value instanceof Float || value instanceof Double) {
+      statement.bindDouble(index, ((Number) value).doubleValue());
+    } else if (value instanceof Number) {
+      statement.bindLong(index, ((Number) value).longValue());
+    } else if (value instanceof Boolean) {
+      statement.bindLong(index, ((Boolean) value) ? 1 : 0);
+    } else if (value instanceof byte[]) {
+      statement.bindBlob(index, (byte[]) value);
+    } else {
+      statement.bindString(index, value.toString());
+    }
   }
 }
@@ -0,0 +1,408 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.AsyncTask;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents the asynchronous full text searcher which searches the given
+ * term in the full text search shadow table of an entity table. The matched
+ * rows are ranked, the best matches are read from the entity table and
+ * returned in rank order. Only the best matches up to the limit are kept
+ * while the matches are ranked, so short prefix queries on large tables
+ * do not load the whole match set.
+ *
+ * Each word of the term is searched as prefix, so the search works
+ * while the user is typing.
+ *
+ * @see DBContract#createFTSStatements(java.lang.String, java.lang.String[])
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class AsyncDBFullTextSearcher extends AsyncTask<SQLiteOpenHelper, Void, List> {
+
+  /**
+   * The default maximum count of returned matches.
+   */
+  public static final int DEFAULT_LIMIT = 50;
+
+  /**
+   * The query formula which returns the rowid and the match information
+   * of the matching rows.
+   */
+  private static final String MATCH_QUERY = "SELECT docid, matchinfo(%1$s, 'pcx') FROM %1$s WHERE %1$s MATCH ?";
+
+  /**
+   * The query formula which returns the rows for the given rowids. The
+   * rowid is selected as DBContract.ROW_HANDLE, so the lazy columns of
+   * the found entities can be loaded.
+   */
+  private static final String ROW_QUERY = "SELECT " + DBContract.ROW_HANDLE_COLUMN 
+                                          + ", * FROM %s WHERE rowid IN ( %s )";
+
+  /**
+   * The size of an unsigned integer in the match information blob.
+   */
+  private static final int INT_SIZE = 4;
+
+  /**
+   * The searched entity table.
+   */
+  private final String table;
+
+  /**
+   * The full text search query.
+   */
+  private final String match;
+
+  /**
+   * The maximum count of returned matches.
+   */
+  private final int limit;
+
+  /**
+   * The extractor which will be used to extract the values from the result set.
+   */
+  private final CursorExtracting extract;
+
+  /**
+   * The job which will be executed after the search.
+   */
+  private final AsyncDBListReader.PostExecuteJob postJob;
+
+  /**
+   * The ctor to create the asynchronous full text searcher.
+   *
+   * @param term the searched term
+   * @param entity the entity which defines the searched table
+   * @param extract the extractor which will be used to extract the values from the result set
+   * @param limit the maximum count of returned matches
+   * @param postJob the job which will be executed after the search
+   */
+  public AsyncDBFullTextSearcher(String term, Entity entity, CursorExtracting extract,
+                                 int limit, AsyncDBListReader.PostExecuteJob postJob) {
+    this.table = entity.getTableName();
+    this.match = toPrefixQuery(term);
+    this.extract = extract;
+    this.limit = limit;
+    this.postJob = postJob;
+  }
+
+  /**
+   * Converts the given term into a full text search query, which matches
+   * rows which contain all words of the term as prefix.
+   *
+   * @param term the searched term
+   * @return the full text search query, empty if the term contains no word
+   */
+  public static String toPrefixQuery(String term) {
+    StringBuilder query = new StringBuilder();
+    if (term != null) {
+      for (String word : term.split("[^\\p{L}\\p{N}]+")) {
+        if (!word.isEmpty()) {
+          if (query.length() > 0) {
+            query.append(' ');
+          }
+          query.append(word).append('*');
+        }
+      }
+    }
+    return query.toString();
+  }
+
+  @Override
+  protected List doInBackground(SQLiteOpenHelper... helper) {
+    if (extract == null || helper == null || helper.length == 0 || helper[0] == null) {
+      throw new IllegalStateException();
+    }
+
+    List values = new ArrayList();
+    if (match.isEmpty()) {
+      return values;
+    }
+
+    DBConnectionManager manager = DBConnectionManager.getInstance(helper[0]);
+    SQLiteDatabase db = manager.acquire();
+    try {
+      long rowids[] = findBestMatches(db);
+      if (rowids.length > 0) {
+        readRows(db, rowids, values);
+      }
+    } finally {
+      manager.release();
+    }
+    return values;
+  }
+
+  /**
+   * Searches the full text search table and returns the rowids
+   * of the best matches in rank order.
+   *
+   * @param db the database
+   * @return the rowids of the best matches
+   */
+  private long[] findBestMatches(SQLiteDatabase db) {
+    String fts = DBContract.getFTSTableName(table);
+    BestMatches best = new BestMatches(limit);
+    Cursor c = db.rawQuery(String.format(MATCH_QUERY, fts), new String[] {match});
+    try {
+      while (c.moveToNext()) {
+        best.add(c.getLong(0), rank(c.getBlob(1)));
+      }
+    } finally {
+      c.close();
+    }
+    return best.toRowids();
+  }
+
+  /**
+   * Computes the rank of a match from the match information, which contains
+   * for each phrase and column the hits in the row, the hits in all rows
+   * and the count of rows with hits. Each phrase hit in a row is weighted
+   * with the inverse of the hits in all rows, so rare words rank higher.
+   *
+   * @param info the match information in the 'pcx' format
+   * @return the rank of the match
+   */
+  private static double rank(byte[] info) {
+    if (info == null || info.length < 2 * INT_SIZE) {
+      return 0;
+    }
+
+    int phrases = readInt(info, 0);
+    int columns = readInt(info, 1);
+    double rank = 0;
+    for (int p = 0; p < phrases; p++) {
+      for (int col = 0; col < columns; col++) {
+        int offset = 2 + 3 * (p * columns + col);
+        int hitsInRow = readInt(info, offset);
+        int hitsInAllRows = readInt(info, offset + 1);
+        if (hitsInAllRows > 0) {
+          rank += (double) hitsInRow / hitsInAllRows;
+        }
+      }
+    }
+    return rank;
+  }
+
+  /**
+   * Reads the unsigned integer with the given index from the match
+   * information, which is stored in the little endian byte order.
+   *
+   * @param info the match information
+   * @param index the index of the integer
+   * @return the integer value
+   */
+  private static int readInt(byte[] info, int index) {
+    int offset = index * INT_SIZE;
+    if (offset + INT_SIZE > info.length) {
+      return 0;
+    }
+    return (info[offset] & 0xff)
+            | (info[offset + 1] & 0xff) << 8
+            | (info[offset + 2] & 0xff) << 16
+            | (info[offset + 3] & 0xff) << 24;
+  }
+
+  /**
+   * Reads the rows with the given rowids from the entity table and adds
+   * the extracted values in rank order to the given list.
+   *
+   * @param db the database
+   * @param rowids the rowids in rank order
+   * @param values the list which gets the extracted values
+   */
+  private void readRows(SQLiteDatabase db, long[] rowids, List values) {
+    StringBuilder ids = new StringBuilder();
+    Map<Long, Integer> positions = new HashMap<Long, Integer>();
+    for (int i = 0; i < rowids.length; i++) {
+      if (i > 0) {
+        ids.append(',');
+      }
+      ids.append(rowids[i]);
+      positions.put(rowids[i], i);
+    }
+
+    Object ranked[] = new Object[rowids.length];
+    Cursor c = db.rawQuery(String.format(ROW_QUERY, table, ids), null);
+    try {
+      int rowidIndex = c.getColumnIndex(DBContract.ROW_HANDLE);
+      while (c.moveToNext()) {
+        Integer position = positions.get(c.getLong(rowidIndex));
+        if (position != null) {
+          ranked[position] = extract.extract(c);
+        }
+      }
+    } finally {
+      c.close();
+    }
+
+    for (Object o : ranked) {
+      if (o != null) {
+        values.add(o);
+      }
+    }
+  }
+
+  @Override
+  protected void onPostExecute(List result) {
+    super.onPostExecute(result);
+    if (extract instanceof IdentityMapCursorExtractor) {
+      ((IdentityMapCursorExtractor) extract).refresh();
+    }
+    postJob.doJob(result);
+  }
+
+  /**
+   * Represents the bounded min heap which keeps the matches with the
+   * highest ranks, the match with the lowest kept rank is the root.
+   */
+  private static class BestMatches {
+
+    /**
+     * The rowids of the kept matches.
+     */
+    private final long[] rowids;
+
+    /**
+     * The ranks of the kept matches.
+     */
+    private final double[] ranks;
+
+    /**
+     * The count of the kept matches.
+     */
+    private int size;
+
+    /**
+     * The ctor to create the bounded heap.
+     *
+     * @param capacity the maximum count of kept matches
+     */
+    public BestMatches(int capacity) {
+      rowids = new long[Math.max(capacity, 0)];
+      ranks = new double[rowids.length];
+    }
+
+    /**
+     * Adds the given match, if the heap is full the match replaces the 
+     * match with the lowest rank, if its rank is higher.
+     *
+     * @param rowid the rowid of the match
+     * @param rank the rank of the match
+     */
+    public void add(long rowid, double rank) {
+      if (size < rowids.length) {
+        set(size, rowid, rank);
+        siftUp(size++);
+      } else if (size > 0 && rank > ranks[0]) {
+        set(0, rowid, rank);
+        siftDown(0);
+      }
+    }
+
+    /**
+     * Returns the rowids of the kept matches ordered by descending rank,
+     * the heap is empty afterwards.
+     *
+     * @return the ordered rowids
+     */
+    public long[] toRowids() {
+      long ordered[] = new long[size];
+      while (size > 0) {
+        ordered[size - 1] = rowids[0];
+        size--;
+        set(0, rowids[size], ranks[size]);
+        siftDown(0);
+      }
+      return ordered;
+    }
+
+    /**
+     * Moves the match at the given index up, until the parent has a 
+     * lower rank.
+     *
+     * @param index the index of the match
+     */
+    private void siftUp(int index) {
+      while (index > 0) {
+        int parent = (index - 1) / 2;
+        if (ranks[parent] <= ranks[index]) {
+          return;
+        }
+        swap(parent, index);
+        index = parent;
+      }
+    }
+
+    /**
+     * Moves the match at the given index down, until the children have
+     * a higher rank.
+     *
+     * @param index the index of the match
+     */
+    private void siftDown(int index) {
+      while (true) {
+        int lowest = index;
+        int left = 2 * index + 1;
+        int right = left + 1;
+        if (left < size && ranks[left] < ranks[lowest]) {
+          lowest = left;
+        }
+        if (right < size && ranks[right] < ranks[lowest]) {
+          lowest = right;
+        }
+        if (lowest == index) {
+          return;
+        }
+        swap(lowest, index);
+        index = lowest;
+      }
+    }
+
+    /**
+     * Sets the match at the given index.
+     *
+     * @param index the index
+     * @param rowid the rowid of the match
+     * @param rank the rank of the match
+     */
+    private void set(int index, long rowid, double rank) {
+      rowids[index] = rowid;
+      ranks[index] = rank;
+    }
+
+    /**
+     * Swaps the matches at the given indexes.
+     *
+     * @param i the first index
+     * @param j the second index
+     */
+    private void swap(int i, int j) {
+      long rowid = rowids[i];
+      double rank = ranks[i];
+      set(i, rowids[j], ranks[j]);
+      set(j, rowid, rank);
+    }
+  }
+}
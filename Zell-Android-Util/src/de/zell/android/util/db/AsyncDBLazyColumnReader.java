@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.AsyncTask;
+
+/**
+ * Represents the AsyncDBLazyColumnReader which reads asynchronous the value
+ * of a lazy column for one row, which is identified by the row handle.
+ *
+ * @see DBColumn#lazy()
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class AsyncDBLazyColumnReader extends AsyncTask<SQLiteOpenHelper, Void, Object> {
+
+  /**
+   * The selection which selects the row by the row handle.
+   */
+  private static final String ROWID_SELECTION = "rowid" + SQLQuery.SQL_SEARCH_EQUAL;
+
+  /**
+   * The table which contains the row.
+   */
+  private final String table;
+
+  /**
+   * The lazy column.
+   */
+  private final String column;
+
+  /**
+   * The row handle of the row.
+   */
+  private final long rowHandle;
+
+  /**
+   * The job which will be executed after the value was read.
+   */
+  private final PostExecuteJob postJob;
+
+  /**
+   * The ctor to create the AsyncDBLazyColumnReader.
+   *
+   * @param table the table which contains the row
+   * @param column the lazy column
+   * @param rowHandle the row handle of the row
+   * @param postJob the job which will be executed after the value was read
+   */
+  public AsyncDBLazyColumnReader(String table, String column, long rowHandle,
+                                 PostExecuteJob postJob) {
+    this.table = table;
+    this.column = column;
+    this.rowHandle = rowHandle;
+    this.postJob = postJob;
+  }
+
+  @Override
+  protected Object doInBackground(SQLiteOpenHelper... helper) {
+    if (helper == null || helper.length == 0 || helper[0] == null)
+      throw new IllegalArgumentException();
+
+    DBConnectionManager manager = DBConnectionManager.getInstance(helper[0]);
+    SQLiteDatabase db = manager.acquire();
+    try {
+      Cursor c = db.query(table, new String[] {column}, ROWID_SELECTION,
+                          new String[] {String.valueOf(rowHandle)}, null, null, null);
+      try {
+        if (!c.moveToFirst()) {
+          return null;
+        }
+
+        switch (c.getType(0)) {
+          case Cursor.FIELD_TYPE_NULL:
+            return null;
+          case Cursor.FIELD_TYPE_BLOB:
+            return c.getBlob(0);
+          default:
+            return c.getString(0);
+        }
+      } finally {
+        c.close();
+      }
+    } finally {
+      manager.release();
+    }
+  }
+
+  @Override
+  protected void onPostExecute(Object result) {
+    super.onPostExecute(result);
+    postJob.doJob(result);
+  }
+
+  /**
+   * Represents the PostExecuteJob which will be used to execute a job/task after
+   * the value was read.
+   */
+  public interface PostExecuteJob {
+
+    /**
+     * The job which will be executed.
+     *
+     * @param value the value of the lazy column, a String or a byte array
+     */
+    public void doJob(Object value);
+  }
+}
@@ -20,12 +20,19 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.os.AsyncTask;
+import android.os.Build;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Represents the AsyncDBListReader which reads asynchronous from the database a
  * list as result of a SQL Query.
+ * 
+ * The read can be cancelled via cancelQuery, since Jelly Bean the running
+ * query is interrupted with a CancellationSignal, otherwise the reader
+ * stops after the current row.
  *
  * @author Christopher Zell <zelldon91@googlemail.com>
  */
@@ -51,6 +58,11 @@ public class AsyncDBListReader extends AsyncTask<SQLiteOpenHelper, Void, List> {
    */
   private final SQLQuery query;
   
+  /**
+   * The signal to cancel the running query, is null before Jelly Bean.
+   */
+  private final CancellationSignal signal;
+  
   /** 
    * The ctor to create the AsyncDBListReader object to read
    * asynchronous from the database a list as result of the given SQL Query. 
@@ -66,6 +78,8 @@ public class AsyncDBListReader extends AsyncTask<SQLiteOpenHelper, Void, List> {
     this.query = query;
     this.extract = extract;
     this.postJob = postJob;
+    this.signal = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                  ? new CancellationSignal() : null;
   }
 
   @Override
@@ -79,29 +93,82 @@ public class AsyncDBListReader extends AsyncTask<SQLiteOpenHelper, Void, List> {
       values = new ArrayList();
     }
 
-    SQLiteDatabase db = helper[0].getReadableDatabase();
-    Cursor c = db.query(query.getSelectedEntity().getTableName(), 
-                        query.getRequestedColumns(),
-                        query.getSelection(),
-                        query.getSelectionArgs(),
-                        query.getGroupBy(), 
-                        query.getHaving(), 
-                        query.getOrderBy());
-    c.moveToFirst();
-    while (!c.isAfterLast()) {
-      Object o = extract.extract(c);
-      values.add(o);
-      c.moveToNext();
+    DBConnectionManager manager = DBConnectionManager.getInstance(helper[0]);
+    SQLiteDatabase db = manager.acquire();
+    DBQueryMonitor monitor = DBQueryMonitor.getInstance();
+    long start = System.nanoTime();
+    int rows = 0;
+    try {
+      Cursor c = query(db);
+      try {
+        c.moveToFirst();
+        while (!c.isAfterLast() && !isCancelled()) {
+          Object o = extract.extract(c);
+          values.add(o);
+          rows++;
+          c.moveToNext();
+        }
+      } finally {
+        c.close();
+      }
+      
+      if (monitor.isEnabled()) {
+        monitor.traceRead(db, query, System.nanoTime() - start, rows);
+      }
+    } catch (OperationCanceledException ex) {
+      // the read was cancelled, onPostExecute is not called
+    } finally {
+      manager.release();
     }
-    c.close();
-    helper[0].close();
 
     return values;
   }
 
+  /**
+   * Executes the query on the given database, with the cancellation
+   * signal if it is supported.
+   * 
+   * @param db the database
+   * @return the cursor which contains the result
+   */
+  private Cursor query(SQLiteDatabase db) {
+    if (signal != null) {
+      return db.query(false, query.getSelectedEntity().getTableName(), 
+                      query.getRequestedColumns(),
+                      query.getSelection(),
+                      query.getSelectionArgs(),
+                      query.getGroupBy(), 
+                      query.getHaving(), 
+                      query.getOrderBy(), 
+                      query.getLimitClause(), signal);
+    }
+    return db.query(query.getSelectedEntity().getTableName(), 
+                    query.getRequestedColumns(),
+                    query.getSelection(),
+                    query.getSelectionArgs(),
+                    query.getGroupBy(), 
+                    query.getHaving(), 
+                    query.getOrderBy(),
+                    query.getLimitClause());
+  }
+  
+  /**
+   * Cancels the read, the running query is interrupted and the post job
+   * is not executed. Must be called on the main thread.
+   */
+  public void cancelQuery() {
+    cancel(false);
+    if (signal != null) {
+      signal.cancel();
+    }
+  }
+
   @Override
   protected void onPostExecute(List result) {
     super.onPostExecute(result);
+    if (extract instanceof IdentityMapCursorExtractor) {
+      ((IdentityMapCursorExtractor) extract).refresh();
+    }
     postJob.doJob(result);
   }
 
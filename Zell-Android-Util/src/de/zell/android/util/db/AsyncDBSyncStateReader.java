@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.AsyncTask;
+
+/**
+ * Represents the asynchronous sync state reader which reads the stored
+ * change token and ETAG of a synchronized table.
+ *
+ * @see DBDeltaSync
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class AsyncDBSyncStateReader extends AsyncTask<SQLiteOpenHelper, Void, DBDeltaSync.State> {
+
+  /**
+   * The synchronized table.
+   */
+  private final String table;
+
+  /**
+   * The job which will be executed after the sync state was read.
+   */
+  private final PostExecuteJob postJob;
+
+  /**
+   * The ctor to create the asynchronous sync state reader.
+   *
+   * @param table the synchronized table
+   * @param postJob the job which will be executed after the sync state was read
+   */
+  public AsyncDBSyncStateReader(String table, PostExecuteJob postJob) {
+    this.table = table;
+    this.postJob = postJob;
+  }
+
+  @Override
+  protected DBDeltaSync.State doInBackground(SQLiteOpenHelper... helper) {
+    if (helper == null || helper.length == 0 || helper[0] == null)
+      throw new IllegalArgumentException();
+
+    DBConnectionManager manager = DBConnectionManager.getInstance(helper[0]);
+    SQLiteDatabase db = manager.acquire();
+    try {
+      return DBDeltaSync.readState(db, table);
+    } finally {
+      manager.release();
+    }
+  }
+
+  @Override
+  protected void onPostExecute(DBDeltaSync.State result) {
+    super.onPostExecute(result);
+    postJob.doJob(result);
+  }
+
+  /**
+   * Represents the job which will be executed after the sync state was read.
+   */
+  public interface PostExecuteJob {
+
+    /**
+     * The job which will be executed.
+     *
+     * @param state the sync state of the table
+     */
+    public void doJob(DBDeltaSync.State state);
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.AsyncTask;
+import android.util.Log;
+
+/**
+ * Represents the asynchronous transaction writer which executes a bulk write
+ * in one transaction. After the transaction the table change listener is
+ * notified for the tables which are touched by the write.
+ *
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class AsyncDBTransactionWriter extends AsyncTask<SQLiteOpenHelper, Void, Boolean> {
+
+  /**
+   * The job which contains the writes of the transaction.
+   */
+  private final TransactionJob job;
+
+  /**
+   * The tables which are touched by the transaction.
+   */
+  private final String[] tables;
+
+  /**
+   * The listener which is notified after the transaction.
+   */
+  private final TableChangeListener listener;
+
+  /**
+   * The ctor which creates the asynchronous transaction writer.
+   *
+   * @param job the job which contains the writes of the transaction
+   * @param listener the listener which is notified after the transaction, can be null
+   * @param tables the tables which are touched by the transaction
+   */
+  public AsyncDBTransactionWriter(TransactionJob job, TableChangeListener listener,
+                                  String... tables) {
+    this.job = job;
+    this.listener = listener;
+    this.tables = tables;
+  }
+
+  @Override
+  protected Boolean doInBackground(SQLiteOpenHelper... helper) {
+    if (job == null || helper == null || helper.length == 0 || helper[0] == null)
+      throw new IllegalArgumentException();
+
+    DBConnectionManager manager = DBConnectionManager.getInstance(helper[0]);
+    SQLiteDatabase db = manager.acquire();
+    boolean successful = false;
+    try {
+      db.beginTransaction();
+      try {
+        job.doTransaction(db);
+        db.setTransactionSuccessful();
+        successful = true;
+      } finally {
+        db.endTransaction();
+      }
+    } catch (SQLException ex) {
+      Log.e(AsyncDBTransactionWriter.class.getName(), SQLException.class.getName(), ex);
+    } finally {
+      manager.release();
+      if (listener != null && tables != null && tables.length > 0) {
+        listener.onTablesChanged(tables);
+      }
+    }
+    return successful;
+  }
+
+  @Override
+  protected void onPostExecute(Boolean result) {
+    super.onPostExecute(result);
+    job.doPostJob(result);
+  }
+
+  /**
+   * Represents the job which contains the writes of a transaction.
+   */
+  public interface TransactionJob {
+
+    /**
+     * Executes the writes on the given database, the method is called inside
+     * of a transaction on the writer thread.
+     *
+     * @param db the database
+     */
+    public void doTransaction(SQLiteDatabase db);
+
+    /**
+     * The job which will be executed after the transaction.
+     *
+     * @param successful true if the transaction was committed, false otherwise
+     */
+    public void doPostJob(boolean successful);
+  }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import java.io.Serializable;
+
+/**
+ * Represents the identifier of an entity with a composite primary key,
+ * see DBContract.CREATE_STATEMENT_COMPOSITE_PK. The hash code is computed
+ * once in the ctor and the keys are ordered component by component, so
+ * comparing, sorting and looking up entities does not allocate a
+ * concatenated string.
+ *
+ * The entity should create its key once, for example after the extraction,
+ * and return the same instance from getID.
+ *
+ * The integral components are stored as Long and the floating point
+ * components as Double, so keys which are created from an Integer and a
+ * Long id are equal. Components are compared with their natural order if
+ * both are of the same comparable type and numbers of different types are
+ * compared by their value. All other components, and numbers with equal
+ * values, are ordered by their class name, so the order is consistent with
+ * equals. Null is less than every other value.
+ *
+ * @see EntityIdentityMap#get(String, Object, Object)
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public final class CompositeKey implements Comparable<CompositeKey>, Serializable {
+
+  /**
+   * The components of the key.
+   */
+  private final Object parts[];
+
+  /**
+   * The precomputed hash code.
+   */
+  private final int hash;
+
+  /**
+   * The ctor to create the composite key.
+   *
+   * @param parts the components of the key, in the order of the primary
+   * key columns
+   */
+  public CompositeKey(Object... parts) {
+    if (parts == null || parts.length == 0)
+      throw new IllegalArgumentException();
+
+    this.parts = new Object[parts.length];
+    for (int i = 0; i < parts.length; i++) {
+      this.parts[i] = normalize(parts[i]);
+    }
+    int h = 1;
+    for (Object part : this.parts) {
+      h = hash(h, part);
+    }
+    this.hash = h;
+  }
+
+  /**
+   * Returns the count of the components.
+   *
+   * @return the component count
+   */
+  public int size() {
+    return parts.length;
+  }
+
+  /**
+   * Returns the component with the given index, an integral number is
+   * returned as Long and a floating point number as Double.
+   *
+   * @param index the index of the component
+   * @return the component
+   */
+  public Object get(int index) {
+    return parts[index];
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (o instanceof Probe) {
+      return o.equals(this);
+    }
+    if (!(o instanceof CompositeKey)) {
+      return false;
+    }
+
+    CompositeKey other = (CompositeKey) o;
+    if (hash != other.hash || parts.length != other.parts.length) {
+      return false;
+    }
+    for (int i = 0; i < parts.length; i++) {
+      if (!equal(parts[i], other.parts[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int compareTo(CompositeKey other) {
+    int length = Math.min(parts.length, other.parts.length);
+    for (int i = 0; i < length; i++) {
+      int result = compare(parts[i], other.parts[i]);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return parts.length - other.parts.length;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    for (Object part : parts) {
+      builder.append(builder.length() == 0 ? "" : ", ").append(part);
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Returns the given component as Long if it is an integral number and as
+   * Double if it is a floating point number, otherwise the component.
+   *
+   * @param part the component
+   * @return the normalized component
+   */
+  static Object normalize(Object part) {
+    if (part instanceof Number && !(part instanceof Long) && !(part instanceof Double)) {
+      if (isIntegral((Number) part)) {
+        return Long.valueOf(((Number) part).longValue());
+      }
+      if (part instanceof Float) {
+        return Double.valueOf(((Number) part).doubleValue());
+      }
+    }
+    return part;
+  }
+
+  /**
+   * Combines the given hash code with the hash code of the next component.
+   * The hash code of a number is the hash code of its normalized component,
+   * which is computed without allocating the normalized component.
+   *
+   * @param h the hash code of the previous components
+   * @param part the next component
+   * @return the combined hash code
+   */
+  static int hash(int h, Object part) {
+    int partHash;
+    if (part instanceof Number && isIntegral((Number) part)) {
+      long value = ((Number) part).longValue();
+      partHash = (int) (value ^ (value >>> 32));
+    } else if (part instanceof Double || part instanceof Float) {
+      long bits = Double.doubleToLongBits(((Number) part).doubleValue());
+      partHash = (int) (bits ^ (bits >>> 32));
+    } else {
+      partHash = part == null ? 0 : part.hashCode();
+    }
+    return 31 * h + partHash;
+  }
+
+  /**
+   * Checks whether the given normalized component is equal to the 
+   * given component, which is compared as if it was normalized. 
+   *
+   * @param a the normalized component
+   * @param b the component
+   * @return true if the components are equal
+   */
+  static boolean equal(Object a, Object b) {
+    if (a == b) {
+      return true;
+    }
+    if (b instanceof Number && isIntegral((Number) b)) {
+      return a instanceof Long && (Long) a == ((Number) b).longValue();
+    }
+    if (b instanceof Float) {
+      return a instanceof Double 
+              && Double.doubleToLongBits((Double) a)
+              == Double.doubleToLongBits(((Number) b).doubleValue());
+    }
+    return a != null && a.equals(b);
+  }
+
+  /**
+   * Compares the given components.
+   *
+   * @param a the first component
+   * @param b the second component
+   * @return a negative integer, zero, or a positive integer as the first
+   *          component is less than, equal to, or greater than the second.
+   */
+  @SuppressWarnings("unchecked")
+  static int compare(Object a, Object b) {
+    if (a == b) {
+      return 0;
+    }
+    if (a == null) {
+      return -1;
+    }
+    if (b == null) {
+      return 1;
+    }
+    if (a.getClass() == b.getClass() && a instanceof Comparable) {
+      return ((Comparable) a).compareTo(b);
+    }
+    if (a instanceof Number && b instanceof Number) {
+      int result = Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+      if (result != 0) {
+        return result;
+      }
+    }
+    return a.getClass().getName().compareTo(b.getClass().getName());
+  }
+
+  /**
+   * Checks whether the given number is an integral number.
+   *
+   * @param n the number
+   * @return true if the number is a Long, Integer, Short or Byte
+   */
+  private static boolean isIntegral(Number n) {
+    return n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte;
+  }
+
+  /**
+   * Represents a reusable lookup key with two components, which is equal
+   * to the composite key with the same components. It is used to look up
+   * entities of tables with a composite primary key without allocating
+   * a key. The components are hashed and compared as if they were 
+   * normalized, without allocating the normalized components.
+   * The probe must never be stored in a map.
+   */
+  static final class Probe {
+
+    /**
+     * The first component.
+     */
+    private Object first;
+
+    /**
+     * The second component.
+     */
+    private Object second;
+
+    /**
+     * The hash code of the components.
+     */
+    private int hash;
+
+    /**
+     * Sets the components of the probe.
+     *
+     * @param first the first component
+     * @param second the second component
+     * @return the probe
+     */
+    Probe set(Object first, Object second) {
+      this.first = first;
+      this.second = second;
+      this.hash = CompositeKey.hash(CompositeKey.hash(1, first), second);
+      return this;
+    }
+
+    /**
+     * Removes the references of the components.
+     */
+    void clear() {
+      first = null;
+      second = null;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof CompositeKey)) {
+        return o == this;
+      }
+
+      CompositeKey key = (CompositeKey) o;
+      return key.hash == hash && key.parts.length == 2
+              && equal(key.parts[0], first) && equal(key.parts[1], second);
+    }
+  }
+}
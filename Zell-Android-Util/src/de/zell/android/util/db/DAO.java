@@ -16,12 +16,24 @@
  */
 package de.zell.android.util.db;
 
+import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
+import android.util.LruCache;
+import de.zell.android.util.async.AsyncJSONExporter;
+import de.zell.android.util.async.AsyncJSONSender;
+import de.zell.android.util.async.QueryJSONProducer;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * The abstract DAO class which defines the data access object methods
@@ -29,13 +41,130 @@ import java.util.List;
  * 
  * @author Christopher Zell <zelldon91@googlemail.com>
  */
-public abstract class DAO {
+public abstract class DAO implements TableChangeListener {
+  
+  /**
+   * The default maximum count of cached query results.
+   */
+  protected static final int DEFAULT_CACHE_ENTRIES = 32;
+  
+  /**
+   * The default maximum estimated size of all cached query results.
+   */
+  protected static final int DEFAULT_CACHE_SIZE = 16 * 1024;
+  
+  /**
+   * The default debounce window of the coalesced updates in milliseconds.
+   */
+  protected static final long DEFAULT_WRITE_COALESCE_WINDOW = 300;
+  
+  /**
+   * The default maximum count of prefetched pages.
+   */
+  protected static final int DEFAULT_PAGE_CACHE_ENTRIES = 4;
+  
+  /**
+   * The default maximum estimated size of all prefetched pages.
+   */
+  protected static final int DEFAULT_PAGE_CACHE_SIZE = 4 * 1024;
+  
+  /**
+   * The default maximum size of the cached lazy column values in bytes.
+   */
+  protected static final int DEFAULT_LAZY_CACHE_SIZE = 1024 * 1024;
+  
+  /**
+   * The estimated size in bytes of a cached lazy value, which is neither 
+   * a string nor a blob.
+   */
+  private static final int LAZY_VALUE_SIZE = 16;
+  
+  /**
+   * The separator of the lazy cache key parts.
+   */
+  private static final char LAZY_KEY_SEPARATOR = '\u0000';
+  
+  /**
+   * The column count which is used to estimate the result size, if 
+   * the query requests all columns.
+   */
+  private static final int DEFAULT_COLUMN_COUNT = 8;
+  
+  /**
+   * The default debounce time of the live queries in milliseconds.
+   */
+  protected static final long DEFAULT_LIVE_QUERY_DEBOUNCE = 100;
+  
+  /**
+   * The error log message if the changes of a table could not be applied.
+   */
+  private static final String SYNC_FAILED_MSG = "Applying the changes of table '%s' failed!";
+  
+  /**
+   * The error log message if the snapshots of a table could not be stored.
+   */
+  private static final String SNAPSHOT_FAILED_MSG = "Storing the snapshots of table '%s' failed!";
+  
+  /**
+   * The error message if a full refresh failed.
+   */
+  private static final String REFRESH_FAILED_MSG = "Applying the full refresh of table '%s' failed!";
+  
+  /**
+   * The error message if rows of a full refresh could not be inserted.
+   */
+  private static final String REFRESH_INSERT_FAILED_MSG = "%d rows of the full refresh of table '%s' could not be inserted!";
   
   /**
    * The application context which is used to communicate with the database.
    */
   private final Context context;
   
+  /**
+   * The handler which is used to deliver cached results on the main thread.
+   */
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  
+  /**
+   * The cache which contains the results of the executed queries.
+   */
+  private QueryCache queryCache;
+  
+  /**
+   * The cache which contains the prefetched pages.
+   */
+  private QueryCache pageCache;
+  
+  /**
+   * The identity map which contains the loaded entities.
+   */
+  private EntityIdentityMap identityMap;
+  
+  /**
+   * The statistics of the entity updates.
+   */
+  private final UpdateStatistics updateStatistics = new UpdateStatistics();
+  
+  /**
+   * The overlay which contains the values of the pending updates.
+   */
+  private final PendingWriteOverlay pendingWrites = new PendingWriteOverlay();
+  
+  /**
+   * The cache which contains the loaded lazy column values.
+   */
+  private LruCache<String, Object> lazyCache;
+  
+  /**
+   * The coalescer which collects rapid updates of the same rows.
+   */
+  private WriteCoalescer writeCoalescer;
+  
+  /**
+   * The live queries which are refreshed if the selected table changes.
+   */
+  private final List<LiveQuery> liveQueries = new CopyOnWriteArrayList<LiveQuery>();
+  
   /**
    * The ctor to create a DAO object.
    * 
@@ -56,35 +185,904 @@ public abstract class DAO {
   
   /**
    * The method updates the hole database with new content.
+   * The writes should be executed via executeTransaction or 
+   * executeChunkedWrite with the BACKGROUND priority, or the changed
+   * tables should be published via onTablesChanged, so the cached query
+   * results are invalidated. If the query cache is enabled, writes 
+   * which are not published serve stale results.
+   * 
+   * If the server supports change tokens or ETAGs, the implementation should
+   * request only the changes since the last synchronization via 
+   * loadSyncState and applyChanges, instead of rewriting every table.
+   * If a full refresh is unavoidable, it should be written via 
+   * applyFullRefresh, which writes only the changed rows.
    */
   public abstract void updateDB();
   
+  /**
+   * Loads the stored change token and ETAG of the given table. The state
+   * should be used to request only the changes since the last
+   * synchronization.
+   * 
+   * @param table the synchronized table
+   * @param postJob the post job which gets the sync state
+   */
+  public void loadSyncState(String table, AsyncDBSyncStateReader.PostExecuteJob postJob) {
+    new AsyncDBSyncStateReader(table, postJob)
+            .executeOnExecutor(DBExecutors.getReadExecutor(DBPriority.BACKGROUND),
+                               getConnectedHelper());
+  }
+  
+  /**
+   * Applies the upserts and deletes of the given change set and stores
+   * the new change token and ETAG in one transaction, with the 
+   * BACKGROUND priority.
+   * 
+   * @param changes the changes since the last synchronization
+   */
+  public void applyChanges(final DeltaChangeSet changes) {
+    executeTransaction(DBPriority.BACKGROUND, new AsyncDBTransactionWriter.TransactionJob() {
+      @Override
+      public void doTransaction(SQLiteDatabase db) {
+        DBDeltaSync.apply(db, changes);
+      }
+
+      @Override
+      public void doPostJob(boolean successful) {
+        if (!successful) {
+          Log.e(DAO.class.getName(), String.format(SYNC_FAILED_MSG, changes.getTable()));
+        }
+      }
+    }, changes.getTable());
+  }
+  
+  /**
+   * Applies the given entities as the new content of the given table with
+   * the BACKGROUND priority. The DBDiffApplier compares the content hash 
+   * of each entity with the stored hash, so only the new, changed and 
+   * removed rows are written. The values of the entities are the values of
+   * the DBColumn annotated fields, including the lazy columns.
+   * 
+   * @param table the refreshed table, which contains the content hash
+   *              column of DBContract.createContentHashStatements
+   * @param idColumn the identifier column of the table
+   * @param entities all entities of the table
+   * @see DBDiffApplier
+   */
+  public void applyFullRefresh(final String table, final String idColumn,
+                               final List<? extends Entity> entities) {
+    executeTransaction(DBPriority.BACKGROUND, new AsyncDBTransactionWriter.TransactionJob() {
+      @Override
+      public void doTransaction(SQLiteDatabase db) {
+        List<ContentValues> rows = new ArrayList<ContentValues>(entities.size());
+        for (Entity entity : entities) {
+          rows.add(AnnotatedCursorExtractor.toContentValues(entity));
+        }
+        DBDiffApplier.Result result = DBDiffApplier.apply(db, table, idColumn, rows);
+        if (result.getFailed() > 0) {
+          Log.e(DAO.class.getName(), String.format(REFRESH_INSERT_FAILED_MSG, 
+                                                   result.getFailed(), table));
+        }
+      }
+
+      @Override
+      public void doPostJob(boolean successful) {
+        if (!successful) {
+          Log.e(DAO.class.getName(), String.format(REFRESH_FAILED_MSG, table));
+        }
+      }
+    }, table);
+  }
+  
   /**
    * Returns for the given SQL-Query a selection from the database,
    * the result can be used in the given postJob object.
+   * The rows are extracted with the cursor extractor which is returned
+   * by getCursorExtractorForClass for the class of the selected entity.
+   * If the result of the query is cached, the cached result is delivered
+   * without a database read.
+   * 
+   * @param postJob the post job which defines the examination of the result
+   * @param query the SQL-Query which defines the selection
+   */
+  public void getSelection(final AsyncDBListReader.PostExecuteJob postJob, SQLQuery query) {
+    getSelection(postJob, query, null);
+  }
+  
+  /**
+   * Returns for the given SQL-Query a selection from the database,
+   * like getSelection. The started read is registered on the given
+   * canceller, so the read can be cancelled if the result is 
+   * not longer needed.
    * 
    * @param postJob the post job which defines the examination of the result
-   * @param query 
+   * @param query the SQL-Query which defines the selection
+   * @param canceller the canceller which holds the read, can be null
+   */
+  public void getSelection(AsyncDBListReader.PostExecuteJob postJob, SQLQuery query,
+                           DBReadCanceller canceller) {
+    AsyncDBListReader.PostExecuteJob overlay = isPendingWriteOverlayEnabled()
+            ? new OverlayPostExecuteJob(query.getSelectedEntity().getTableName(), postJob)
+            : postJob;
+    final AsyncDBListReader.PostExecuteJob deliver 
+            = isSnapshotStorage(query.getSelectedEntity().getClass())
+            ? new SnapshotPostExecuteJob(overlay)
+            : overlay;
+    AsyncDBListReader.PostExecuteJob job = deliver;
+    QueryCache cache = getQueryCache();
+    QueryCache pages = getPageCache();
+    if (cache != null || pages != null) {
+      String key = query.getCacheKey();
+      List result = cache == null ? null : cache.get(key);
+      if (result == null && pages != null) {
+        result = pages.remove(key);
+      }
+      
+      final List cached = result;
+      if (cached != null) {
+        handler.post(new Runnable() {
+          @Override
+          public void run() {
+            deliver.doJob(cached);
+          }
+        });
+        return;
+      }
+      if (cache != null) {
+        job = new CachingPostExecuteJob(cache, query, key, deliver);
+      }
+    }
+    
+    CursorExtracting extract = createCursorExtractor(query.getSelectedEntity());
+    AsyncDBListReader reader = new AsyncDBListReader(null, query, extract, job);
+    if (canceller != null) {
+      canceller.register(reader);
+    }
+    reader.executeOnExecutor(DBExecutors.getReadExecutor(query.getPriority()),
+                             getConnectedHelper());
+  }
+  
+  /**
+   * Prefetches the result of the given SQL-Query into the page cache, 
+   * so a following getSelection of the same query is delivered without
+   * a database read. Should be used to prefetch the next page of a 
+   * paged query. Nothing is read if the result is already cached or
+   * the page cache is not enabled.
+   * 
+   * @param query the SQL-Query which defines the page
+   * @see #isPageCacheEnabled()
+   */
+  public void prefetch(SQLQuery query) {
+    QueryCache pages = getPageCache();
+    if (pages == null) {
+      return;
+    }
+    
+    String key = query.getCacheKey();
+    QueryCache cache = getQueryCache();
+    if (pages.get(key) != null || (cache != null && cache.get(key) != null)) {
+      return;
+    }
+    
+    AsyncDBListReader.PostExecuteJob job = new CachingPostExecuteJob(pages, query, key,
+            new AsyncDBListReader.PostExecuteJob() {
+      @Override
+      public void doJob(List result) {
+      }
+    });
+    new AsyncDBListReader(null, query, createCursorExtractor(query.getSelectedEntity()), job)
+            .executeOnExecutor(DBExecutors.getReadExecutor(DBPriority.PREFETCH),
+                               getConnectedHelper());
+  }
+  
+  /**
+   * Loads the value of the given lazy column of the given entity, which 
+   * was loaded without the lazy columns. The value is set to the DBColumn 
+   * annotated field and is delivered to the post job. If the field already
+   * contains a value or the value is cached, no database read is executed.
+   * The entity must contain a field for the DBContract.ROW_HANDLE column.
+   * Must be called on the main thread.
+   * 
+   * @param entity the entity which contains the lazy column
+   * @param column the lazy column
+   * @param postJob the post job which gets the value
+   * @see DBColumn#lazy()
+   */
+  public void loadLazyColumn(Object entity, String column,
+                             AsyncDBLazyColumnReader.PostExecuteJob postJob) {
+    loadLazyColumn(DBPriority.INTERACTIVE, entity, column, postJob);
+  }
+  
+  /**
+   * Loads the value of the given lazy column of the given entity with 
+   * the given priority, like loadLazyColumn. Must be called on the 
+   * main thread.
+   * 
+   * @param priority the priority of the read
+   * @param entity the entity which contains the lazy column
+   * @param column the lazy column
+   * @param postJob the post job which gets the value
+   * @see DBColumn#lazy()
+   */
+  public void loadLazyColumn(DBPriority priority, final Object entity, final String column,
+                             final AsyncDBLazyColumnReader.PostExecuteJob postJob) {
+    Object value = AnnotatedCursorExtractor.getValue(entity, column);
+    Object handle = AnnotatedCursorExtractor.getValue(entity, DBContract.ROW_HANDLE);
+    if (value == null && handle instanceof Number) {
+      final String key = ((Entity) entity).getTableName() + LAZY_KEY_SEPARATOR
+                         + handle + LAZY_KEY_SEPARATOR + column;
+      final LruCache<String, Object> cache = getLazyCache();
+      value = cache.get(key);
+      if (value == null) {
+        new AsyncDBLazyColumnReader(((Entity) entity).getTableName(), column,
+                                    ((Number) handle).longValue(),
+                                    new AsyncDBLazyColumnReader.PostExecuteJob() {
+          @Override
+          public void doJob(Object value) {
+            if (value != null) {
+              cache.put(key, value);
+              AnnotatedCursorExtractor.setValue(entity, column, value);
+            }
+            postJob.doJob(value);
+          }
+        }).executeOnExecutor(DBExecutors.getReadExecutor(priority), getConnectedHelper());
+        return;
+      }
+      AnnotatedCursorExtractor.setValue(entity, column, value);
+    }
+    
+    final Object loaded = value;
+    handler.post(new Runnable() {
+      @Override
+      public void run() {
+        postJob.doJob(loaded);
+      }
+    });
+  }
+  
+  /**
+   * Returns the small cache which contains the loaded lazy column values.
+   * The cache is limited by the size of the values in bytes, since the
+   * lazy columns contain large texts and blobs.
+   * 
+   * @return the lazy cache
+   */
+  private synchronized LruCache<String, Object> getLazyCache() {
+    if (lazyCache == null) {
+      lazyCache = new LruCache<String, Object>(DEFAULT_LAZY_CACHE_SIZE) {
+        @Override
+        protected int sizeOf(String key, Object value) {
+          int size = key.length() * 2;
+          if (value instanceof byte[]) {
+            return size + ((byte[]) value).length;
+          } else if (value instanceof String) {
+            return size + ((String) value).length() * 2;
+          }
+          return size + LAZY_VALUE_SIZE;
+        }
+      };
+    }
+    return lazyCache;
+  }
+  
+  /**
+   * Reads the numeric result of the given SQL-Query into primitive columns,
+   * without the creation of an object per row. Should be used for large
+   * numeric results, like chart data or values which are aggregated in Java.
+   * 
+   * @param query the SQL-Query, the requested columns must be numeric
+   * @param types the types of the requested columns, see NumericColumns
+   * @param postJob the post job which gets the columns
+   */
+  public void getNumericSelection(SQLQuery query, int[] types,
+                                  AsyncDBColumnReader.PostExecuteJob postJob) {
+    new AsyncDBColumnReader(query, types, postJob)
+            .executeOnExecutor(DBExecutors.getReadExecutor(query.getPriority()),
+                               getConnectedHelper());
+  }
+  
+  /**
+   * Counts the rows which are selected by the given SQL-Query, 
+   * without reading the rows.
+   * 
+   * @param query the SQL-Query which defines the selection
+   * @param postJob the post job which gets the count
+   */
+  public void count(SQLQuery query, AsyncDBScalarReader.PostExecuteJob postJob) {
+    aggregate(query, SQLQuery.SQL_COUNT, postJob);
+  }
+  
+  /**
+   * Sums the given integer column over the rows which are selected by the 
+   * given SQL-Query. The sum is delivered as long value, is 0 if no row 
+   * is selected. Real columns should be summed with the 
+   * AsyncDBAggregateReader.PostExecuteJob.
+   * 
+   * @param query the SQL-Query which defines the selection
+   * @param column the summed column
+   * @param postJob the post job which gets the sum
+   */
+  public void sum(SQLQuery query, String column, AsyncDBScalarReader.PostExecuteJob postJob) {
+    aggregate(query, String.format(SQLQuery.SQL_SUM, column), postJob);
+  }
+  
+  /**
+   * Sums the given column over the rows which are selected by the given 
+   * SQL-Query. The sum is delivered as double value, is null if no row 
+   * is selected.
+   * 
+   * @param query the SQL-Query which defines the selection
+   * @param column the summed column
+   * @param postJob the post job which gets the sum
+   */
+  public void sum(SQLQuery query, String column, AsyncDBAggregateReader.PostExecuteJob postJob) {
+    aggregate(query, String.format(SQLQuery.SQL_SUM, column), postJob);
+  }
+  
+  /**
+   * Averages the given column over the rows which are selected by the given 
+   * SQL-Query. The average is null if no row is selected.
+   * 
+   * @param query the SQL-Query which defines the selection
+   * @param column the averaged column
+   * @param postJob the post job which gets the average
+   */
+  public void average(SQLQuery query, String column, 
+                      AsyncDBAggregateReader.PostExecuteJob postJob) {
+    aggregate(query, String.format(SQLQuery.SQL_AVG, column), postJob);
+  }
+  
+  /**
+   * Computes the given integer aggregate expression over the rows which are 
+   * selected by the given SQL-Query. The value is read as long, so a real
+   * value is truncated and NULL is delivered as 0.
+   * 
+   * @param query the SQL-Query which defines the selection
+   * @param aggregate the aggregate expression, like SQLQuery.SQL_COUNT
+   * @param postJob the post job which gets the value
+   */
+  public void aggregate(SQLQuery query, String aggregate, 
+                        AsyncDBScalarReader.PostExecuteJob postJob) {
+    new AsyncDBScalarReader(query.getAggregateStatement(aggregate), 
+                            query.getSelectionArgs(), postJob)
+            .executeOnExecutor(DBExecutors.getReadExecutor(query.getPriority()),
+                               getConnectedHelper());
+  }
+  
+  /**
+   * Computes the given aggregate expression over the rows which are selected
+   * by the given SQL-Query. The value is read as double via a cursor, 
+   * is null if the aggregate is NULL.
+   * 
+   * @param query the SQL-Query which defines the selection
+   * @param aggregate the aggregate expression, like SQLQuery.SQL_AVG
+   * @param postJob the post job which gets the value
+   */
+  public void aggregate(SQLQuery query, String aggregate, 
+                        AsyncDBAggregateReader.PostExecuteJob postJob) {
+    new AsyncDBAggregateReader(query.getAggregateStatement(aggregate), 
+                               query.getSelectionArgs(), postJob)
+            .executeOnExecutor(DBExecutors.getReadExecutor(query.getPriority()),
+                               getConnectedHelper());
+  }
+  
+  /**
+   * Checks whether the given SQL-Query selects at least one row. 
+   * The post job gets 1 if a row exists, 0 otherwise.
+   * 
+   * @param query the SQL-Query which defines the selection
+   * @param postJob the post job which gets the result
+   */
+  public void exists(SQLQuery query, AsyncDBScalarReader.PostExecuteJob postJob) {
+    new AsyncDBScalarReader(query.getExistsStatement(), query.getSelectionArgs(), postJob)
+            .executeOnExecutor(DBExecutors.getReadExecutor(query.getPriority()),
+                               getConnectedHelper());
+  }
+  
+  /**
+   * Observes the given SQL-Query. The result is delivered to the given 
+   * postJob and is re-delivered each time a write of the DAO touches the
+   * selected table. The re-query is debounced, so a burst of writes 
+   * triggers one refresh. Must be called on the main thread.
+   * 
+   * @param query the SQL-Query which defines the selection
+   * @param postJob the post job which gets each delivered result
+   * @return the live query, which must be cancelled if the result
+   * is not longer needed
+   */
+  public LiveQuery observe(SQLQuery query, AsyncDBListReader.PostExecuteJob postJob) {
+    LiveQuery live = new LiveQuery(this, query, postJob, handler, getLiveQueryDebounce());
+    liveQueries.add(live);
+    live.refresh();
+    return live;
+  }
+  
+  /**
+   * Removes the given live query, the query is not longer refreshed.
+   * 
+   * @param live the live query which should be removed
+   */
+  void removeLiveQuery(LiveQuery live) {
+    liveQueries.remove(live);
+  }
+  
+  /**
+   * Returns the debounce time of the live queries in milliseconds.
+   * 
+   * @return the debounce time
+   */
+  protected long getLiveQueryDebounce() {
+    return DEFAULT_LIVE_QUERY_DEBOUNCE;
+  }
+  
+  /**
+   * Searches the given term in the full text search table of the given
+   * entity. Each word of the term is searched as prefix, the result contains
+   * the best matching entities in rank order. The full text search table
+   * must be created with the DBContract.createFTSStatements.
+   * 
+   * @param term the searched term
+   * @param entity the entity which defines the searched table
+   * @param postJob the post job which gets the matching entities
+   */
+  public void search(String term, Entity entity, AsyncDBListReader.PostExecuteJob postJob) {
+    search(DBPriority.INTERACTIVE, term, entity, postJob);
+  }
+  
+  /**
+   * Searches the given term in the full text search table of the given
+   * entity with the given priority, like search.
+   * 
+   * @param priority the priority of the search
+   * @param term the searched term
+   * @param entity the entity which defines the searched table
+   * @param postJob the post job which gets the matching entities
+   */
+  public void search(DBPriority priority, String term, Entity entity, 
+                     AsyncDBListReader.PostExecuteJob postJob) {
+    AsyncDBListReader.PostExecuteJob job = isPendingWriteOverlayEnabled()
+            ? new OverlayPostExecuteJob(entity.getTableName(), postJob)
+            : postJob;
+    new AsyncDBFullTextSearcher(term, entity, createCursorExtractor(entity),
+                                AsyncDBFullTextSearcher.DEFAULT_LIMIT, job)
+            .executeOnExecutor(DBExecutors.getReadExecutor(priority), getConnectedHelper());
+  }
+  
+  /**
+   * Exports the result of the given SQL-Query via POST as JSON array to the
+   * given URL. The rows are read in pages and streamed to the HTTP output 
+   * stream, so the export takes constant memory. The selected entities 
+   * are marshalled with the JSONMarshaller. The upload runs with the
+   * priority of the query on the export executor, a database connection 
+   * is only acquired for the reading of each page. The pages are read with
+   * a keyset, so the query can be ordered by at most one column and can 
+   * not be grouped.
+   * 
+   * @param query the SQL-Query which selects the exported entities
+   * @param url the url of the web service
+   * @param postJob the post job which gets the response of the web service
+   * @see DBExecutors#getExportExecutor(DBPriority)
+   */
+  public void export(SQLQuery query, String url, AsyncJSONSender.PostExecuteJob postJob) {
+    export(query.getPriority(), query, url, postJob);
+  }
+  
+  /**
+   * Exports the result of the given SQL-Query via POST as JSON array to the
+   * given URL with the given priority, like export.
+   * 
+   * @param priority the priority of the export
+   * @param query the SQL-Query which selects the exported entities
+   * @param url the url of the web service
+   * @param postJob the post job which gets the response of the web service
+   */
+  public void export(DBPriority priority, SQLQuery query, String url, 
+                     AsyncJSONSender.PostExecuteJob postJob) {
+    Entity selected = query.getSelectedEntity();
+    CursorExtracting extract = createEntityExtractor(selected);
+    if (isPendingWriteOverlayEnabled()) {
+      extract = new OverlayCursorExtractor(selected.getTableName(), extract);
+    }
+    QueryJSONProducer producer = new QueryJSONProducer(getConnectedHelper(), query, extract);
+    new AsyncJSONExporter(url, postJob).executeOnExecutor(DBExecutors.getExportExecutor(priority),
+                                                          producer);
+  }
+  
+  /**
+   * Creates the cursor extractor for the given entity, which decodes the
+   * snapshots if the entity is stored as snapshot and consults the 
+   * identity map if the identity map is enabled.
+   * 
+   * @param entity the entity which should be extracted
+   * @return the cursor extractor
+   */
+  private CursorExtracting createCursorExtractor(Entity entity) {
+    CursorExtracting extract = createEntityExtractor(entity);
+    if (isIdentityMapEnabled()) {
+      extract = new IdentityMapCursorExtractor(extract, getIdentityMap());
+    }
+    return extract;
+  }
+  
+  /**
+   * Creates the cursor extractor for the given entity, which decodes the
+   * snapshots if the entity is stored as snapshot. The extracted entities
+   * are new instances, which are not shared with the identity map.
+   * 
+   * @param entity the entity which should be extracted
+   * @return the cursor extractor
    */
-  public abstract void getSelection(AsyncDBListReader.PostExecuteJob postJob, SQLQuery query);
+  private CursorExtracting createEntityExtractor(Entity entity) {
+    return isSnapshotStorage(entity.getClass())
+           ? new SnapshotCursorExtractor(entity.getClass())
+           : getCursorExtractorForClass(entity.getClass());
+  }
   
   /**
    * Updates with the given SQL-Query the entity on the SQLite database.
+   * If the dirty tracking is enabled, the update is dropped if no selected
+   * row would be changed. If the pending write overlay is enabled, the 
+   * new values are delivered by getSelection, search and export until the
+   * update is written.
    * 
    * @param query the update SQL-Query
    */
   public void updateEntity(SQLQuery query) {
-    new AsyncDBEntityUpdater(query).execute(getSQLiteOpenHelper());
+    PendingWriteOverlay overlay = null;
+    if (isPendingWriteOverlayEnabled()) {
+      overlay = pendingWrites;
+      overlay.add(query);
+    }
+    new AsyncDBEntityUpdater(query, this, isDirtyTrackingEnabled() ? updateStatistics : null,
+                             overlay)
+            .executeOnExecutor(DBExecutors.getWriteExecutor(query.getPriority()),
+                               getConnectedHelper());
+  }
+  
+  /**
+   * Updates with the given SQL-Query the entity on the SQLite database,
+   * after the debounce window has passed. Rapid updates of the same rows,
+   * like toggling a favorite, are coalesced, so only the final values 
+   * are written once. Must be called on the main thread.
+   * 
+   * @param query the update SQL-Query
+   * @see #flushCoalescedUpdates()
+   */
+  public void coalesceUpdate(SQLQuery query) {
+    if (isPendingWriteOverlayEnabled()) {
+      pendingWrites.add(query);
+    }
+    getWriteCoalescer().update(query);
+  }
+  
+  /**
+   * Writes all coalesced updates immediately, should be called if 
+   * the component which issues the updates is paused. 
+   * Must be called on the main thread.
+   */
+  public void flushCoalescedUpdates() {
+    if (writeCoalescer != null) {
+      writeCoalescer.flush();
+    }
+  }
+  
+  /**
+   * Returns the write coalescer of the DAO, creates the coalescer
+   * if it does not exist.
+   * 
+   * @return the write coalescer
+   */
+  private WriteCoalescer getWriteCoalescer() {
+    if (writeCoalescer == null) {
+      writeCoalescer = new WriteCoalescer(this, handler, getWriteCoalesceWindow());
+    }
+    return writeCoalescer;
+  }
+  
+  /**
+   * Returns the debounce window of the coalesced updates in milliseconds.
+   * 
+   * @return the debounce window
+   */
+  protected long getWriteCoalesceWindow() {
+    return DEFAULT_WRITE_COALESCE_WINDOW;
+  }
+  
+  /**
+   * Stores the given entities as snapshots in the table of the entities, 
+   * which must be created with DBContract.createSnapshotStatements. 
+   * Existing rows with the same identifier are replaced. The snapshots
+   * are written in one transaction with the BACKGROUND priority, if one
+   * entity can not be encoded no snapshot is stored.
+   * 
+   * @param entities the entities of one table
+   * @param idColumn the identifier column
+   * @param keyColumns the indexed key columns
+   * @see #isSnapshotStorage(Class)
+   */
+  public void storeSnapshots(final List<? extends Entity> entities, final String idColumn,
+                             final String... keyColumns) {
+    if (entities.isEmpty()) {
+      return;
+    }
+    
+    final String table = entities.get(0).getTableName();
+    final EntitySnapshotCodec codec = EntitySnapshotCodec.forClass(entities.get(0).getClass());
+    executeTransaction(DBPriority.BACKGROUND, new AsyncDBTransactionWriter.TransactionJob() {
+      @Override
+      public void doTransaction(SQLiteDatabase db) {
+        for (Entity entity : entities) {
+          db.replace(table, null, codec.toContentValues(entity, idColumn, keyColumns));
+        }
+      }
+
+      @Override
+      public void doPostJob(boolean successful) {
+        if (!successful) {
+          Log.e(DAO.class.getName(), String.format(SNAPSHOT_FAILED_MSG, table));
+        }
+      }
+    }, table);
+  }
+  
+  /**
+   * Executes the given job in one transaction on the writer thread.
+   * Should be used for bulk writes, after the transaction the cached
+   * query results of the given tables are invalidated.
+   * 
+   * @param job the job which contains the writes
+   * @param tables the tables which are touched by the writes
+   */
+  public void executeTransaction(AsyncDBTransactionWriter.TransactionJob job, String... tables) {
+    executeTransaction(DBPriority.INTERACTIVE, job, tables);
+  }
+  
+  /**
+   * Executes the given job in one transaction on the writer thread with
+   * the given priority. After the transaction the cached query results 
+   * of the given tables are invalidated.
+   * 
+   * @param priority the priority of the transaction
+   * @param job the job which contains the writes
+   * @param tables the tables which are touched by the writes
+   */
+  public void executeTransaction(DBPriority priority, AsyncDBTransactionWriter.TransactionJob job,
+                                 String... tables) {
+    new AsyncDBTransactionWriter(job, this, tables)
+            .executeOnExecutor(DBExecutors.getWriteExecutor(priority), getConnectedHelper());
+  }
+  
+  /**
+   * Executes the given bulk write in chunks on the writer thread, each 
+   * chunk in its own transaction. Writes with a higher priority are executed
+   * between the chunks, so a background import does not block interactive
+   * writes. After the last chunk the cached query results of the given 
+   * tables are invalidated.
+   * 
+   * @param priority the priority of the chunks, should be BACKGROUND for syncs
+   * @param job the job which contains the chunks
+   * @param tables the tables which are touched by the writes
+   */
+  public void executeChunkedWrite(DBPriority priority, DBChunkedWriter.ChunkedJob job,
+                                  String... tables) {
+    new DBChunkedWriter(job, getConnectedHelper(), priority, this, tables).start();
+  }
+
+  /**
+   * Invalidates the cached query results, prefetched pages and lazy column
+   * values of the given tables and schedules a refresh of the live queries
+   * which observe the tables.
+   * Is called after each write of the DAO, should also be called after
+   * writes which are not executed via the DAO.
+   * 
+   * @param tables the changed tables
+   */
+  @Override
+  public void onTablesChanged(String... tables) {
+    QueryCache cache = getQueryCache();
+    if (cache != null) {
+      for (String table : tables) {
+        cache.invalidate(table);
+      }
+    }
+    
+    QueryCache pages = getPageCache();
+    if (pages != null) {
+      for (String table : tables) {
+        pages.invalidate(table);
+      }
+    }
+    
+    LruCache<String, Object> lazy = getLazyCache();
+    for (String key : lazy.snapshot().keySet()) {
+      for (String table : tables) {
+        if (key.startsWith(table + LAZY_KEY_SEPARATOR)) {
+          lazy.remove(key);
+          break;
+        }
+      }
+    }
+    
+    for (LiveQuery live : liveQueries) {
+      for (String table : tables) {
+        if (live.getTable().equals(table)) {
+          live.onTableChanged();
+          break;
+        }
+      }
+    }
+  }
+  
+  /**
+   * Returns whether the updates should be checked against the stored rows, 
+   * so updates which would not change a value are dropped before they
+   * reach SQLite. The check costs an additional statement per update,
+   * so it should only be enabled if many updates do not change a value,
+   * like repeated writes of the same state. Is disabled per default.
+   * 
+   * @return true if the dirty tracking should be used, false otherwise
+   */
+  protected boolean isDirtyTrackingEnabled() {
+    return false;
+  }
+  
+  /**
+   * Returns whether the values of the pending updates should be merged into
+   * the entities which are delivered by getSelection, search and export, 
+   * so a query which is executed right after an update returns the new 
+   * values. The scalar and column reads, like count, aggregate, 
+   * getNumericSelection and loadLazyColumn, return the stored values.
+   * The overlay only merges updates with a selection of the form 
+   * "column = ?" and DBColumn annotated entity fields, the merged entities
+   * are copies. Is disabled per default.
+   * 
+   * @return true if the pending write overlay should be used, false otherwise
+   */
+  protected boolean isPendingWriteOverlayEnabled() {
+    return false;
+  }
+  
+  /**
+   * Returns the statistics of the entity updates, which contain the count
+   * of the executed and the dropped no-op updates.
+   * 
+   * @return the update statistics
+   */
+  public UpdateStatistics getUpdateStatistics() {
+    return updateStatistics;
+  }
+  
+  /**
+   * Returns whether the results of the executed queries should be cached.
+   * The cached results are only invalidated by the writes of the DAO and
+   * by onTablesChanged, so the cache should only be enabled if updateDB 
+   * and all other writes outside of the DAO publish the changed tables 
+   * via onTablesChanged. Is disabled per default.
+   * 
+   * @return true if the query cache should be used, false otherwise
+   */
+  protected boolean isQueryCacheEnabled() {
+    return false;
+  }
+  
+  /**
+   * Returns the cache which contains the results of the executed queries,
+   * is null if the query cache is not enabled.
+   * Can be overridden to return null, which disables the caching.
+   * 
+   * @return the query cache
+   * @see #isQueryCacheEnabled()
+   */
+  protected synchronized QueryCache getQueryCache() {
+    if (!isQueryCacheEnabled()) {
+      return null;
+    }
+    if (queryCache == null) {
+      queryCache = new QueryCache(DEFAULT_CACHE_ENTRIES, DEFAULT_CACHE_SIZE);
+    }
+    return queryCache;
+  }
+  
+  /**
+   * Returns whether the prefetched pages should be cached. Like the query
+   * cache, the pages are only invalidated by the writes of the DAO and by
+   * onTablesChanged. If disabled, prefetch does nothing. Is disabled 
+   * per default.
+   * 
+   * @return true if the page cache should be used, false otherwise
+   */
+  protected boolean isPageCacheEnabled() {
+    return false;
+  }
+  
+  /**
+   * Returns the small cache which contains the prefetched pages, is null
+   * if the page cache is not enabled. It is separated from the query cache,
+   * so prefetches do not evict the results of interactive queries. 
+   * A page is removed as soon as it is delivered by getSelection.
+   * Can be overridden to return null, which disables the prefetching.
+   * 
+   * @return the page cache
+   * @see #isPageCacheEnabled()
+   */
+  protected synchronized QueryCache getPageCache() {
+    if (!isPageCacheEnabled()) {
+      return null;
+    }
+    if (pageCache == null) {
+      pageCache = new QueryCache(DEFAULT_PAGE_CACHE_ENTRIES, DEFAULT_PAGE_CACHE_SIZE);
+    }
+    return pageCache;
+  }
+  
+  /**
+   * Returns whether the entities of the given class are stored as snapshots.
+   * The entities are then decoded from the snapshot column, instead of 
+   * mapping each column, the queries should request the 
+   * DBContract.SNAPSHOT_COLUMN. Is disabled per default, should be
+   * enabled for wide read-mostly entities.
+   * 
+   * @param c the entity class
+   * @return true if the entities are stored as snapshots, false otherwise
+   * @see #storeSnapshots(List, String, String...)
+   */
+  protected boolean isSnapshotStorage(Class c) {
+    return false;
+  }
+  
+  /**
+   * Returns whether the loaded entities should be mapped in the identity map,
+   * so the same row yields the same entity instance across queries.
+   * Is disabled per default.
+   * 
+   * @return true if the identity map should be used, false otherwise
+   */
+  protected boolean isIdentityMapEnabled() {
+    return false;
+  }
+  
+  /**
+   * Returns the identity map which contains the entities loaded by this DAO.
+   * 
+   * @return the identity map
+   */
+  protected synchronized EntityIdentityMap getIdentityMap() {
+    if (identityMap == null) {
+      identityMap = new EntityIdentityMap();
+    }
+    return identityMap;
+  }
+  
+  /**
+   * Returns the estimated size of the given query result, which is used
+   * to bound the query cache. Per default the size is the count of 
+   * rows multiplied with the count of the requested columns.
+   * 
+   * @param query the executed query
+   * @param result the result of the query
+   * @return the estimated size
+   */
+  protected int estimateResultSize(SQLQuery query, List result) {
+    String columns[] = query.getRequestedColumns();
+    int columnCount = columns == null ? DEFAULT_COLUMN_COUNT : columns.length;
+    return result.size() * Math.max(1, columnCount);
   }
   
   /**
    * The cursor extractor which should be used for the given class
    * to extract the values for a given cursor from the database.
    * 
+   * Returns per default an AnnotatedCursorExtractor, which maps the
+   * DBColumn annotated fields of the class. Can be overridden
+   * to use a hand-written extractor.
+   * 
    * @param c the class for which the extractor is needed
    * @return the corresponding cursor extractor
+   * @see AnnotatedCursorExtractor
    */
-  protected abstract CursorExtracting getCursorExtractorForClass(Class c);
+  protected CursorExtracting getCursorExtractorForClass(Class c) {
+    return AnnotatedCursorExtractor.forClass(c);
+  }
   
   /**
    * Returns the SQLiteOpenHelper object which is used to communicate with
@@ -94,6 +1092,71 @@ public abstract class DAO {
    */
   protected abstract SQLiteOpenHelper getSQLiteOpenHelper();
   
+  /**
+   * Returns the connection manager which keeps the database of the
+   * SQLiteOpenHelper open and shares the connection between the
+   * database tasks.
+   * 
+   * @return the connection manager
+   */
+  protected DBConnectionManager getConnectionManager() {
+    DBConnectionManager manager = DBConnectionManager.getInstance(getSQLiteOpenHelper());
+    manager.setWriteAheadLoggingEnabled(isWriteAheadLoggingEnabled());
+    manager.setTuningProfile(getTuningProfile());
+    return manager;
+  }
+  
+  /**
+   * Returns the SQLiteOpenHelper, after the connection manager of the 
+   * helper was configured. The helper is passed to the database tasks,
+   * so the database is opened with the settings of the DAO.
+   * 
+   * @return the SQLiteOpenHelper
+   */
+  private SQLiteOpenHelper getConnectedHelper() {
+    getConnectionManager();
+    return getSQLiteOpenHelper();
+  }
+  
+  /**
+   * Returns the tuning profile which is applied if the database is opened.
+   * Returns per default null, which keeps the SQLite defaults. 
+   * Can be overridden to return a preset like 
+   * DBTuningProfile.readHeavyCatalog(). The profile is applied to the
+   * primary connection, a memory mapped profile disables the write-ahead
+   * logging per default, so the reads use the primary connection.
+   * 
+   * @return the tuning profile or null
+   */
+  protected DBTuningProfile getTuningProfile() {
+    return null;
+  }
+  
+  /**
+   * Returns whether write-ahead logging should be enabled for the database.
+   * With write-ahead logging the reads on the reader pool are not blocked
+   * by a running write, but they use pooled connections, which keep the 
+   * SQLite defaults instead of the tuning profile. Is enabled per default,
+   * unless the tuning profile is memory mapped.
+   * 
+   * @return true if write-ahead logging should be enabled, false otherwise
+   */
+  protected boolean isWriteAheadLoggingEnabled() {
+    DBTuningProfile profile = getTuningProfile();
+    return profile == null || !profile.isMemoryMapped();
+  }
+  
+  /**
+   * Closes the database connection if no database task uses the connection.
+   * Should only be called if the database is not longer needed,
+   * otherwise the connection stays open for the life of the process.
+   * 
+   * @return true if the connection was closed, false otherwise
+   */
+  public boolean closeConnection() {
+    return getConnectionManager().close();
+  }
+  
   
   
   /**
@@ -126,4 +1189,163 @@ public abstract class DAO {
     return values;
   }
   
+  /**
+   * Represents the post job which sets the values of the pending updates
+   * on the delivered entities, before the result is delegated to the 
+   * original post job.
+   */
+  private class OverlayPostExecuteJob implements AsyncDBListReader.PostExecuteJob {
+    
+    /**
+     * The table of the selected entities.
+     */
+    private final String table;
+    
+    /**
+     * The original post job.
+     */
+    private final AsyncDBListReader.PostExecuteJob postJob;
+
+    /**
+     * The ctor to create the overlay post job.
+     * 
+     * @param table the table of the selected entities
+     * @param postJob the original post job
+     */
+    public OverlayPostExecuteJob(String table, AsyncDBListReader.PostExecuteJob postJob) {
+      this.table = table;
+      this.postJob = postJob;
+    }
+
+    @Override
+    public void doJob(List result) {
+      if (pendingWrites.hasPendingWrites(table)) {
+        result = pendingWrites.apply(table, result);
+      }
+      postJob.doJob(result);
+    }
+  }
+  
+  /**
+   * Represents the post job which removes the rows of the result, whose
+   * snapshot could not be decoded, before the result is delegated to the
+   * original post job.
+   */
+  private static class SnapshotPostExecuteJob implements AsyncDBListReader.PostExecuteJob {
+    
+    /**
+     * The original post job.
+     */
+    private final AsyncDBListReader.PostExecuteJob postJob;
+
+    /**
+     * The ctor to create the snapshot post job.
+     * 
+     * @param postJob the original post job
+     */
+    public SnapshotPostExecuteJob(AsyncDBListReader.PostExecuteJob postJob) {
+      this.postJob = postJob;
+    }
+
+    @Override
+    public void doJob(List result) {
+      if (result != null && result.contains(null)) {
+        result = new ArrayList(result);
+        result.removeAll(Collections.singleton(null));
+      }
+      postJob.doJob(result);
+    }
+  }
+  
+  /**
+   * Represents the cursor extractor which sets the values of the pending
+   * updates on each extracted entity. Is used by the export, which does
+   * not deliver the entities on the main thread.
+   */
+  private class OverlayCursorExtractor implements CursorExtracting {
+    
+    /**
+     * The table of the extracted entities.
+     */
+    private final String table;
+    
+    /**
+     * The extractor which extracts the entities.
+     */
+    private final CursorExtracting extract;
+    
+    /**
+     * The ctor to create the overlay cursor extractor.
+     * 
+     * @param table the table of the extracted entities
+     * @param extract the extractor which extracts the entities
+     */
+    public OverlayCursorExtractor(String table, CursorExtracting extract) {
+      this.table = table;
+      this.extract = extract;
+    }
+    
+    @Override
+    public Object extract(Cursor c) {
+      return pendingWrites.apply(table, extract.extract(c));
+    }
+  }
+  
+  /**
+   * Represents the post job which stores the query result into the query
+   * cache, before the result is delegated to the original post job.
+   */
+  private class CachingPostExecuteJob implements AsyncDBListReader.PostExecuteJob {
+    
+    /**
+     * The cache which stores the result.
+     */
+    private final QueryCache cache;
+    
+    /**
+     * The executed query.
+     */
+    private final SQLQuery query;
+    
+    /**
+     * The key of the executed query.
+     */
+    private final String key;
+    
+    /**
+     * The generation of the table before the query was started.
+     */
+    private final long generation;
+    
+    /**
+     * The original post job.
+     */
+    private final AsyncDBListReader.PostExecuteJob postJob;
+
+    /**
+     * The ctor to create the caching post job.
+     * 
+     * @param cache the cache which stores the result
+     * @param query the executed query
+     * @param key the key of the query
+     * @param postJob the original post job
+     */
+    public CachingPostExecuteJob(QueryCache cache, SQLQuery query, String key,
+                                 AsyncDBListReader.PostExecuteJob postJob) {
+      this.cache = cache;
+      this.query = query;
+      this.key = key;
+      this.postJob = postJob;
+      this.generation = cache.getGeneration(query.getSelectedEntity().getTableName());
+    }
+
+    @Override
+    public void doJob(List result) {
+      if (result != null) {
+        cache.put(key, query.getSelectedEntity().getTableName(), result,
+                  estimateResultSize(query, result), generation);
+      }
+      postJob.doJob(result);
+    }
+  }
 }
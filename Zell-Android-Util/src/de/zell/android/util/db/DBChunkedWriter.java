@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * Represents the chunked writer which executes a bulk write in chunks.
+ * Each chunk is written in its own transaction, after a chunk the writer
+ * resubmits itself to the write executor. So queued writes with a higher
+ * priority, like interactive updates, are executed between the chunks
+ * instead of waiting behind the whole bulk write.
+ *
+ * After the last chunk, or if a chunk failed with any exception, the table
+ * change listener is notified and the post job is executed on the main
+ * thread, since the previous chunks are already committed.
+ *
+ * @see DBExecutors
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class DBChunkedWriter implements Runnable {
+
+  /**
+   * The job which contains the chunks.
+   */
+  private final ChunkedJob job;
+
+  /**
+   * The helper which is used to open the database.
+   */
+  private final SQLiteOpenHelper helper;
+
+  /**
+   * The priority of the chunks.
+   */
+  private final DBPriority priority;
+
+  /**
+   * The listener which is notified after the last chunk.
+   */
+  private final TableChangeListener listener;
+
+  /**
+   * The tables which are touched by the chunks.
+   */
+  private final String[] tables;
+
+  /**
+   * The handler of the main thread, which executes the post job.
+   */
+  private final Handler handler = new Handler(Looper.getMainLooper());
+
+  /**
+   * The ctor to create the chunked writer.
+   *
+   * @param job the job which contains the chunks
+   * @param helper the helper which is used to open the database
+   * @param priority the priority of the chunks
+   * @param listener the listener which is notified after the last chunk, can be null
+   * @param tables the tables which are touched by the chunks
+   */
+  public DBChunkedWriter(ChunkedJob job, SQLiteOpenHelper helper, DBPriority priority,
+                         TableChangeListener listener, String... tables) {
+    if (job == null || helper == null || priority == null)
+      throw new IllegalArgumentException();
+
+    this.job = job;
+    this.helper = helper;
+    this.priority = priority;
+    this.listener = listener;
+    this.tables = tables;
+  }
+
+  /**
+   * Submits the first chunk to the write executor.
+   */
+  public void start() {
+    DBExecutors.getWriteExecutor(priority).execute(this);
+  }
+
+  @Override
+  public void run() {
+    DBConnectionManager manager = DBConnectionManager.getInstance(helper);
+    SQLiteDatabase db = manager.acquire();
+    boolean more = false;
+    boolean successful = false;
+    try {
+      db.beginTransaction();
+      try {
+        more = job.doChunk(db);
+        db.setTransactionSuccessful();
+        successful = true;
+      } finally {
+        db.endTransaction();
+      }
+    } catch (SQLException ex) {
+      Log.e(DBChunkedWriter.class.getName(), SQLException.class.getName(), ex);
+    } finally {
+      manager.release();
+      if (successful && more) {
+        start();
+      } else {
+        finish(successful);
+      }
+    }
+  }
+
+  /**
+   * Notifies the listener and executes the post job on the main thread.
+   *
+   * @param successful true if all chunks were committed, false otherwise
+   */
+  private void finish(final boolean successful) {
+    if (listener != null && tables != null && tables.length > 0) {
+      listener.onTablesChanged(tables);
+    }
+    handler.post(new Runnable() {
+      @Override
+      public void run() {
+        job.doPostJob(successful);
+      }
+    });
+  }
+
+  /**
+   * Represents the job which contains the chunks of a bulk write.
+   */
+  public interface ChunkedJob {
+
+    /**
+     * Writes the next chunk on the given database, the method is called
+     * inside of a transaction on the writer thread. A chunk should be small
+     * enough, so a waiting interactive write is not noticeably delayed.
+     *
+     * @param db the database
+     * @return true if more chunks follow, false if the bulk write is done
+     */
+    public boolean doChunk(SQLiteDatabase db);
+
+    /**
+     * The job which will be executed after the last chunk.
+     *
+     * @param successful true if all chunks were committed, false otherwise
+     */
+    public void doPostJob(boolean successful);
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Represents an annotation to mark an entity field as database column.
+ * The name value of the annotation is the column name of the corresponding
+ * database table, it should be the same constant which is declared in the
+ * DB contract.
+ * 
+ * @see AnnotatedCursorExtractor
+ * @see DAO#loadLazyColumn(Object, String, AsyncDBLazyColumnReader.PostExecuteJob)
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+@Documented
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DBColumn {
+  String name();
+  
+  /**
+   * Marks a large TEXT or BLOB column, which is not requested for list
+   * queries and is loaded on first access via DAO.loadLazyColumn.
+   * The entity should contain a field for the DBContract.ROW_HANDLE column.
+   */
+  boolean lazy() default false;
+}
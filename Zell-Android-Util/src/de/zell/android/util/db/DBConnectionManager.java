@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
+import android.util.Log;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Represents a reference counted connection manager for a SQLiteOpenHelper.
+ * The database is opened on the first acquire and stays open for the life
+ * of the process, so following queries do not pay the cost to reopen the
+ * database file. The SQLiteDatabase object is thread safe and is shared
+ * between all concurrent readers and writers.
+ *
+ * Each acquire must be followed by a release, the database can only be closed
+ * if no connection is acquired. The manager is removed if the database is
+ * closed.
+ *
+ * There should be only one SQLiteOpenHelper instance per database, for
+ * example a singleton which is returned by DAO.getSQLiteOpenHelper, since
+ * each helper gets its own manager and its own open database.
+ *
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class DBConnectionManager {
+
+  /**
+   * Contains the connection managers for the used SQLiteOpenHelpers.
+   */
+  private static final Map<SQLiteOpenHelper, DBConnectionManager> MANAGERS
+          = new HashMap<SQLiteOpenHelper, DBConnectionManager>();
+
+  /**
+   * The helper which is used to open the database.
+   */
+  private final SQLiteOpenHelper helper;
+
+  /**
+   * The opened database.
+   */
+  private SQLiteDatabase database;
+
+  /**
+   * The count of the acquired connections.
+   */
+  private int references;
+
+  /**
+   * The flag indicates whether write-ahead logging should be enabled
+   * if the database is opened.
+   */
+  private boolean writeAheadLogging;
+
+  /**
+   * The tuning profile which is applied if the database is opened.
+   */
+  private DBTuningProfile tuningProfile;
+
+  /**
+   * The ctor to create the connection manager for the given helper.
+   *
+   * @param helper the helper which is used to open the database
+   */
+  private DBConnectionManager(SQLiteOpenHelper helper) {
+    this.helper = helper;
+  }
+
+  /**
+   * Returns the connection manager for the given SQLiteOpenHelper.
+   * For each helper exists only one connection manager.
+   *
+   * @param helper the helper which is used to open the database
+   * @return the corresponding connection manager
+   */
+  public static DBConnectionManager getInstance(SQLiteOpenHelper helper) {
+    if (helper == null)
+      throw new IllegalArgumentException();
+
+    synchronized (MANAGERS) {
+      DBConnectionManager manager = MANAGERS.get(helper);
+      if (manager == null) {
+        manager = new DBConnectionManager(helper);
+        MANAGERS.put(helper, manager);
+      }
+      return manager;
+    }
+  }
+
+  /**
+   * Acquires a connection to the database. Opens the database if
+   * it is not already open.
+   *
+   * @return the opened database
+   */
+  public synchronized SQLiteDatabase acquire() {
+    if (database == null || !database.isOpen()) {
+      database = open();
+    }
+    references++;
+    return database;
+  }
+
+  /**
+   * Enables or disables write-ahead logging. With write-ahead logging the
+   * reads can run in parallel to a write. The setting is applied if
+   * the database is opened, or immediately if the database is already
+   * open and no connection is acquired.
+   *
+   * @param enabled true if write-ahead logging should be enabled
+   */
+  public synchronized void setWriteAheadLoggingEnabled(boolean enabled) {
+    if (enabled != writeAheadLogging && references == 0
+            && database != null && database.isOpen()) {
+      if (enabled) {
+        database.enableWriteAheadLogging();
+      } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+        database.disableWriteAheadLogging();
+      }
+    }
+    this.writeAheadLogging = enabled;
+  }
+
+  /**
+   * Sets the tuning profile, which is applied if the database is opened.
+   *
+   * @param profile the tuning profile, null keeps the SQLite defaults
+   */
+  public synchronized void setTuningProfile(DBTuningProfile profile) {
+    this.tuningProfile = profile;
+  }
+
+  /**
+   * Opens the database, if the database can't be opened for writing
+   * it will be opened read only. The tuning profile is applied to the
+   * writable database.
+   *
+   * @return the opened database
+   */
+  protected SQLiteDatabase open() {
+    if (writeAheadLogging && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+      helper.setWriteAheadLoggingEnabled(true);
+    }
+
+    SQLiteDatabase db;
+    try {
+      db = helper.getWritableDatabase();
+    } catch (SQLiteException ex) {
+      Log.e(DBConnectionManager.class.getName(), SQLiteException.class.getName(), ex);
+      return helper.getReadableDatabase();
+    }
+
+    if (writeAheadLogging && Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+      db.enableWriteAheadLogging();
+    }
+
+    if (tuningProfile != null) {
+      tuningProfile.apply(db);
+    }
+    return db;
+  }
+
+  /**
+   * Releases an acquired connection. The database stays open.
+   */
+  public synchronized void release() {
+    if (references > 0) {
+      references--;
+    }
+  }
+
+  /**
+   * Returns the count of the currently acquired connections.
+   *
+   * @return the reference count
+   */
+  public synchronized int getReferenceCount() {
+    return references;
+  }
+
+  /**
+   * Closes the database if no connection is acquired.
+   *
+   * @return true if the database was closed, false otherwise
+   */
+  public boolean close() {
+    synchronized (MANAGERS) {
+      synchronized (this) {
+        if (references > 0) {
+          return false;
+        }
+
+        if (database != null) {
+          helper.close();
+          database = null;
+        }
+        if (MANAGERS.get(helper) == this) {
+          MANAGERS.remove(helper);
+        }
+        return true;
+      }
+    }
+  }
+}
@@ -22,6 +22,27 @@ package de.zell.android.util.db;
  */
 public abstract class DBContract {
   
+  /**
+   * The column name of the row handle, which identifies the row of an 
+   * entity to load the lazy columns.
+   */
+  public static final String ROW_HANDLE = "_row_handle";
+  
+  /**
+   * The requested column which selects the rowid as row handle.
+   */
+  public static final String ROW_HANDLE_COLUMN = "rowid AS " + ROW_HANDLE;
+  
+  /**
+   * The column of a snapshot table, which contains the encoded entity.
+   */
+  public static final String SNAPSHOT_COLUMN = "snapshot";
+  
+  /**
+   * The column which contains the content hash of a row, which is used
+   * by the DBDiffApplier to detect unchanged rows.
+   */
+  public static final String CONTENT_HASH_COLUMN = "content_hash";
   
   /**
    * The SQLiteDatabase text datatype.
@@ -33,6 +54,11 @@ public abstract class DBContract {
    */
   protected static final String INT_TYPE = " INTEGER";
   
+  /**
+   * The SQLiteDatabase blob datatype.
+   */
+  protected static final String BLOB_TYPE = " BLOB";
+  
   /**
    * The comma separator which will be used in the SQL statements.
    */
@@ -48,9 +74,281 @@ public abstract class DBContract {
    */
   protected static final String CREATE_STATEMENT_COMPOSITE_PK = "CREATE TABLE %s ( %s, PRIMARY KEY ( %s, %s ));";
   
+  /**
+   * The SQLiteDatabase create snapshot table formula, which contains the
+   * identifier, the key columns and the snapshot column.
+   */
+  protected static final String CREATE_SNAPSHOT_STATEMENT = "CREATE TABLE %s ( %s%s PRIMARY KEY, %s%s" + BLOB_TYPE + " );";
+  
   /**
    * The SQLiteDatabase drop table formula.
    */
   protected static final String DROP_STATEMENT = "DROP TABLE IF EXISTS %s;";
   
+  /**
+   * The SQLiteDatabase create index formula.
+   */
+  protected static final String CREATE_INDEX_STATEMENT = "CREATE INDEX IF NOT EXISTS %s ON %s ( %s );";
+  
+  /**
+   * The SQLiteDatabase create unique index formula.
+   */
+  protected static final String CREATE_UNIQUE_INDEX_STATEMENT = "CREATE UNIQUE INDEX IF NOT EXISTS %s ON %s ( %s );";
+  
+  /**
+   * The SQLiteDatabase drop index formula.
+   */
+  protected static final String DROP_INDEX_STATEMENT = "DROP INDEX IF EXISTS %s;";
+  
+  /**
+   * The SQLiteDatabase add column formula, the type should be one of the
+   * datatype constants.
+   */
+  protected static final String ADD_COLUMN_STATEMENT = "ALTER TABLE %s ADD COLUMN %s%s;";
+  
+  /**
+   * The suffix of the full text search shadow table of a table.
+   */
+  protected static final String FTS_SUFFIX = "_fts";
+  
+  /**
+   * The SQLiteDatabase create full text search table formula.
+   */
+  protected static final String CREATE_FTS_STATEMENT = "CREATE VIRTUAL TABLE %s USING fts4( %s );";
+  
+  /**
+   * The trigger formula which inserts a new row into the full text search table.
+   */
+  protected static final String CREATE_FTS_INSERT_TRIGGER = "CREATE TRIGGER %1$s_ai AFTER INSERT ON %2$s BEGIN "
+                                                          + "INSERT INTO %1$s ( docid, %3$s ) VALUES ( new.rowid, %4$s ); END;";
+  
+  /**
+   * The trigger formula which removes an updated row from the full text search table,
+   * fires only if an indexed column is updated.
+   */
+  protected static final String CREATE_FTS_BEFORE_UPDATE_TRIGGER = "CREATE TRIGGER %1$s_bu BEFORE UPDATE OF %3$s ON %2$s BEGIN "
+                                                                 + "DELETE FROM %1$s WHERE docid = old.rowid; END;";
+  
+  /**
+   * The trigger formula which inserts an updated row into the full text search table,
+   * fires only if an indexed column is updated.
+   */
+  protected static final String CREATE_FTS_AFTER_UPDATE_TRIGGER = "CREATE TRIGGER %1$s_au AFTER UPDATE OF %3$s ON %2$s BEGIN "
+                                                                + "INSERT INTO %1$s ( docid, %3$s ) VALUES ( new.rowid, %4$s ); END;";
+  
+  /**
+   * The trigger formula which removes a deleted row from the full text search table.
+   */
+  protected static final String CREATE_FTS_DELETE_TRIGGER = "CREATE TRIGGER %1$s_bd BEFORE DELETE ON %2$s BEGIN "
+                                                          + "DELETE FROM %1$s WHERE docid = old.rowid; END;";
+  
+  /**
+   * The formula which fills the full text search table with the existing rows.
+   */
+  protected static final String FTS_REBUILD_STATEMENT = "INSERT INTO %1$s ( docid, %2$s ) SELECT rowid, %2$s FROM %3$s;";
+  
+  /**
+   * The formula which removes all rows from the full text search table.
+   */
+  protected static final String FTS_CLEAR_STATEMENT = "DELETE FROM %s;";
+  
+  /**
+   * The formula which drops a trigger.
+   */
+  protected static final String DROP_TRIGGER_STATEMENT = "DROP TRIGGER IF EXISTS %s;";
+  
+  /**
+   * The trigger formula which clears the content hash of an updated row,
+   * fires only if the update does not write a new content hash.
+   */
+  protected static final String CREATE_CONTENT_HASH_TRIGGER = "CREATE TRIGGER %1$s_hu AFTER UPDATE ON %1$s "
+                                                            + "WHEN new.%2$s IS old.%2$s BEGIN "
+                                                            + "UPDATE %1$s SET %2$s = NULL WHERE rowid = new.rowid; END;";
+  
+  /**
+   * Contains the table and columns of the sync state table, which stores
+   * the delta sync token and ETAG of each synchronized table.
+   * 
+   * @see DBDeltaSync
+   */
+  public static abstract class SyncState {
+    
+    /**
+     * The name of the sync state table.
+     */
+    public static final String TABLE_NAME = "sync_state";
+    
+    /**
+     * The column of the synchronized table name, which is the primary key.
+     */
+    public static final String COLUMN_TABLE = "table_name";
+    
+    /**
+     * The column of the change token, which is returned by the server.
+     */
+    public static final String COLUMN_TOKEN = "sync_token";
+    
+    /**
+     * The column of the ETAG of the last response.
+     */
+    public static final String COLUMN_ETAG = "etag";
+    
+    /**
+     * The statement which creates the sync state table.
+     */
+    public static final String CREATE_STATEMENT = String.format(DBContract.CREATE_STATEMENT,
+                                                   TABLE_NAME, COLUMN_TABLE, TEXT_TYPE,
+                                                   COLUMN_TOKEN + TEXT_TYPE + COMMA_SEP
+                                                   + COLUMN_ETAG + TEXT_TYPE);
+    
+    /**
+     * The statement which drops the sync state table.
+     */
+    public static final String DROP_STATEMENT = String.format(DBContract.DROP_STATEMENT, TABLE_NAME);
+  }
+  
+  /**
+   * Returns the name of the full text search shadow table for the given table.
+   * 
+   * @param table the table name
+   * @return the name of the full text search table
+   */
+  protected static String getFTSTableName(String table) {
+    return table + FTS_SUFFIX;
+  }
+  
+  /**
+   * Returns the statements which create the full text search shadow table
+   * for the given table and columns. The shadow table is kept in sync by
+   * triggers and is filled with the existing rows of the table.
+   * The rows are identified by the rowid, tables without an integer primary
+   * key should be rebuilt after a VACUUM, since the rowids can change.
+   * 
+   * @param table the table which should be searchable
+   * @param columns the text columns which should be indexed
+   * @return the create statements
+   */
+  protected static String[] createFTSStatements(String table, String... columns) {
+    String fts = getFTSTableName(table);
+    String cols = join(columns, "");
+    String newCols = join(columns, "new.");
+    return new String[] {
+      String.format(CREATE_FTS_STATEMENT, fts, cols),
+      String.format(CREATE_FTS_INSERT_TRIGGER, fts, table, cols, newCols),
+      String.format(CREATE_FTS_BEFORE_UPDATE_TRIGGER, fts, table, cols),
+      String.format(CREATE_FTS_AFTER_UPDATE_TRIGGER, fts, table, cols, newCols),
+      String.format(CREATE_FTS_DELETE_TRIGGER, fts, table),
+      String.format(FTS_REBUILD_STATEMENT, fts, cols, table)
+    };
+  }
+  
+  /**
+   * Returns the statements which refill the full text search shadow table
+   * with the current rows of the table.
+   * 
+   * @param table the searchable table
+   * @param columns the indexed text columns
+   * @return the rebuild statements
+   */
+  protected static String[] rebuildFTSStatements(String table, String... columns) {
+    String fts = getFTSTableName(table);
+    return new String[] {
+      String.format(FTS_CLEAR_STATEMENT, fts),
+      String.format(FTS_REBUILD_STATEMENT, fts, join(columns, ""), table)
+    };
+  }
+  
+  /**
+   * Returns the statements which drop the full text search shadow table
+   * and the triggers of the given table.
+   * 
+   * @param table the searchable table
+   * @return the drop statements
+   */
+  protected static String[] dropFTSStatements(String table) {
+    String fts = getFTSTableName(table);
+    return new String[] {
+      String.format(DROP_TRIGGER_STATEMENT, fts + "_ai"),
+      String.format(DROP_TRIGGER_STATEMENT, fts + "_bu"),
+      String.format(DROP_TRIGGER_STATEMENT, fts + "_au"),
+      String.format(DROP_TRIGGER_STATEMENT, fts + "_bd"),
+      String.format(DROP_STATEMENT, fts)
+    };
+  }
+  
+  /**
+   * Returns the statements which add the content hash column to the given
+   * table, which is used by the DBDiffApplier. A trigger clears the hash
+   * of each row which is updated without a new hash, so rows which are 
+   * changed by other writes are updated by the next full refresh.
+   * 
+   * @param table the table which is refreshed with the DBDiffApplier
+   * @return the create statements
+   * @see DBDiffApplier
+   */
+  protected static String[] createContentHashStatements(String table) {
+    return new String[] {
+      String.format(ADD_COLUMN_STATEMENT, table, CONTENT_HASH_COLUMN, INT_TYPE),
+      String.format(CREATE_CONTENT_HASH_TRIGGER, table, CONTENT_HASH_COLUMN)
+    };
+  }
+  
+  /**
+   * Returns the statements which create a snapshot table, which stores
+   * each entity as identifier, indexed key columns and the snapshot, which is
+   * encoded with the EntitySnapshotCodec. The key columns are the
+   * columns which are used in selections and order by clauses.
+   * 
+   * @param table the table name
+   * @param idColumn the identifier column
+   * @param idType the datatype of the identifier, for example INT_TYPE
+   * @param keyColumns the key column definitions, the name followed by 
+   *                   the datatype, for example "name" + TEXT_TYPE
+   * @return the create statements
+   * @see EntitySnapshotCodec
+   */
+  protected static String[] createSnapshotStatements(String table, String idColumn, String idType,
+                                                     String... keyColumns) {
+    String statements[] = new String[keyColumns.length + 1];
+    String keys = join(keyColumns, "");
+    statements[0] = String.format(CREATE_SNAPSHOT_STATEMENT, table, idColumn, idType,
+                                  keys.length() == 0 ? "" : keys + COMMA_SEP + ' ',
+                                  SNAPSHOT_COLUMN);
+    for (int i = 0; i < keyColumns.length; i++) {
+      statements[i + 1] = DBIndex.on(table, keyColumns[i].trim().split("\\s+")[0])
+                                 .getCreateStatement();
+    }
+    return statements;
+  }
+  
+  /**
+   * Returns the statement which adds the given column to the given table.
+   * 
+   * @param table the table name
+   * @param column the name of the new column
+   * @param type the datatype of the new column, for example TEXT_TYPE
+   * @return the add column statement
+   */
+  protected static String addColumnStatement(String table, String column, String type) {
+    return String.format(ADD_COLUMN_STATEMENT, table, column, type);
+  }
+  
+  /**
+   * Joins the given columns with the comma separator, each column gets the
+   * given prefix.
+   * 
+   * @param columns the columns
+   * @param prefix the prefix of each column
+   * @return the joined columns
+   */
+  protected static String join(String[] columns, String prefix) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < columns.length; i++) {
+      if (i > 0) {
+        builder.append(COMMA_SEP).append(' ');
+      }
+      builder.append(prefix).append(columns[i]);
+    }
+    return builder.toString();
+  }
 }
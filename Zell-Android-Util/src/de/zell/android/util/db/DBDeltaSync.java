@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import de.zell.android.util.async.GetRequestInfo;
+import java.util.List;
+
+/**
+ * Contains the methods for the delta synchronization of tables. The change
+ * token and the ETAG of each synchronized table are stored in the sync state
+ * table, so only the changes since the last synchronization are requested.
+ * The changes are applied as upserts and deletes in one transaction together
+ * with the new sync state, so the sync traffic and the writes are
+ * proportional to the changed rows.
+ *
+ * The sync state table must be created with the
+ * DBContract.SyncState.CREATE_STATEMENT.
+ *
+ * @see DeltaChangeSet
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public final class DBDeltaSync {
+
+  /**
+   * The maximum count of identifiers in one delete statement.
+   */
+  private static final int MAX_DELETE_ARGS = 500;
+
+  /**
+   * The delete statement formula for a list of identifiers.
+   */
+  private static final String DELETE_STATEMENT = "DELETE FROM %s WHERE %s IN ( %s )";
+
+  /**
+   * The default name of the request parameter, which contains the 
+   * stored change token.
+   */
+  public static final String DEFAULT_TOKEN_PARAMETER = "since";
+
+  /**
+   * The private ctor, the class contains only static methods.
+   */
+  private DBDeltaSync() {
+  }
+
+  /**
+   * Reads the sync state of the given table.
+   *
+   * @param db the database
+   * @param table the synchronized table
+   * @return the sync state, contains no token and ETAG if the table was
+   * not synchronized before
+   */
+  public static State readState(SQLiteDatabase db, String table) {
+    Cursor c = db.query(DBContract.SyncState.TABLE_NAME,
+                        new String[] {DBContract.SyncState.COLUMN_TOKEN,
+                                      DBContract.SyncState.COLUMN_ETAG},
+                        DBContract.SyncState.COLUMN_TABLE + SQLQuery.SQL_SEARCH_EQUAL,
+                        new String[] {table}, null, null, null);
+    try {
+      if (c.moveToFirst()) {
+        return new State(table, c.getString(0), c.getString(1));
+      }
+    } finally {
+      c.close();
+    }
+    return new State(table, null, null);
+  }
+
+  /**
+   * Applies the given changes and stores the new sync state. Should be
+   * called inside of a transaction, so the changes and the sync state are
+   * written atomically.
+   *
+   * @param db the database
+   * @param changes the changes which should be applied
+   */
+  public static void apply(SQLiteDatabase db, DeltaChangeSet changes) {
+    String table = changes.getTable();
+    String idSelection = changes.getIdColumn() + SQLQuery.SQL_SEARCH_EQUAL;
+    String idArgs[] = new String[1];
+    for (ContentValues values : changes.getUpserts()) {
+      idArgs[0] = values.getAsString(changes.getIdColumn());
+      if (db.update(table, values, idSelection, idArgs) == 0) {
+        db.insert(table, null, values);
+      }
+    }
+
+    delete(db, table, changes.getIdColumn(), changes.getDeletes());
+    writeState(db, table, changes.getToken(), changes.getEtag());
+  }
+
+  /**
+   * Deletes the rows with the given identifiers in chunks.
+   *
+   * @param db the database
+   * @param table the table
+   * @param idColumn the identifier column
+   * @param ids the identifiers of the deleted rows
+   */
+  static void delete(SQLiteDatabase db, String table, String idColumn, List<String> ids) {
+    final int size = ids.size();
+    for (int from = 0; from < size; from += MAX_DELETE_ARGS) {
+      int to = Math.min(size, from + MAX_DELETE_ARGS);
+      StringBuilder placeholders = new StringBuilder();
+      for (int i = from; i < to; i++) {
+        placeholders.append(i == from ? "?" : ", ?");
+      }
+      db.execSQL(String.format(DELETE_STATEMENT, table, idColumn, placeholders),
+                 ids.subList(from, to).toArray());
+    }
+  }
+
+  /**
+   * Stores the sync state of the given table. A null value keeps the
+   * stored value.
+   *
+   * @param db the database
+   * @param table the synchronized table
+   * @param token the new change token
+   * @param etag the new ETAG
+   */
+  public static void writeState(SQLiteDatabase db, String table, String token, String etag) {
+    ContentValues values = new ContentValues();
+    if (token != null) {
+      values.put(DBContract.SyncState.COLUMN_TOKEN, token);
+    }
+    if (etag != null) {
+      values.put(DBContract.SyncState.COLUMN_ETAG, etag);
+    }
+    if (values.size() == 0) {
+      return;
+    }
+
+    String args[] = new String[] {table};
+    if (db.update(DBContract.SyncState.TABLE_NAME, values,
+                  DBContract.SyncState.COLUMN_TABLE + SQLQuery.SQL_SEARCH_EQUAL, args) == 0) {
+      values.put(DBContract.SyncState.COLUMN_TABLE, table);
+      db.insert(DBContract.SyncState.TABLE_NAME, null, values);
+    }
+  }
+
+  /**
+   * Represents the sync state of a table.
+   */
+  public static class State {
+
+    /**
+     * The synchronized table.
+     */
+    private final String table;
+
+    /**
+     * The change token of the last synchronization.
+     */
+    private final String token;
+
+    /**
+     * The ETAG of the last synchronization.
+     */
+    private final String etag;
+
+    /**
+     * The ctor to create the sync state.
+     *
+     * @param table the synchronized table
+     * @param token the change token of the last synchronization
+     * @param etag the ETAG of the last synchronization
+     */
+    public State(String table, String token, String etag) {
+      this.table = table;
+      this.token = token;
+      this.etag = etag;
+    }
+
+    public String getTable() {
+      return table;
+    }
+
+    public String getToken() {
+      return token;
+    }
+
+    public String getEtag() {
+      return etag;
+    }
+
+    /**
+     * Returns the request info for the given URL with the stored ETAG,
+     * so the server can answer with not modified. The stored change token
+     * is appended as DEFAULT_TOKEN_PARAMETER, so the server returns only
+     * the changes since the last synchronization.
+     *
+     * @param url the URL which returns the changes
+     * @return the request info
+     */
+    public GetRequestInfo toRequestInfo(String url) {
+      return toRequestInfo(url, DEFAULT_TOKEN_PARAMETER);
+    }
+
+    /**
+     * Returns the request info for the given URL with the stored ETAG and
+     * the stored change token as the given request parameter. Without a
+     * stored token the URL is not changed, so the server returns all rows.
+     *
+     * @param url the URL which returns the changes
+     * @param tokenParameter the name of the request parameter of the token
+     * @return the request info
+     */
+    public GetRequestInfo toRequestInfo(String url, String tokenParameter) {
+      if (url == null || tokenParameter == null)
+        throw new IllegalArgumentException();
+
+      if (token != null) {
+        url = Uri.parse(url).buildUpon()
+                 .appendQueryParameter(tokenParameter, token)
+                 .build().toString();
+      }
+      return new GetRequestInfo(url, etag);
+    }
+  }
+}
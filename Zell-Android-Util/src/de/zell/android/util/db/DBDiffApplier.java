@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Contains the methods to apply a full refresh of a table as diff. For each
+ * incoming row a content hash is computed and compared with the hash which
+ * is stored in the DBContract.CONTENT_HASH_COLUMN of the existing row.
+ * Only new rows are inserted, only rows with another hash are updated and
+ * only rows which are not contained in the refresh are deleted, so unchanged
+ * rows cause no writes.
+ *
+ * The table must contain the content hash column and its trigger, which
+ * are created by DBContract.createContentHashStatements(table). The trigger
+ * clears the hash of each row which is updated by another write, so 
+ * rows without a stored hash are always updated once.
+ *
+ * @see DAO#applyFullRefresh(String, String, List)
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public final class DBDiffApplier {
+
+  /**
+   * The offset basis of the 64 bit FNV-1a hash.
+   */
+  static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+  /**
+   * The prime of the 64 bit FNV-1a hash.
+   */
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  /**
+   * The private ctor, the class contains only static methods.
+   */
+  private DBDiffApplier() {
+  }
+
+  /**
+   * Applies the given rows as the new content of the table. Should be
+   * called inside of a transaction. The content hash of each row is put
+   * into the given values.
+   *
+   * @param db the database
+   * @param table the refreshed table
+   * @param idColumn the identifier column of the table
+   * @param rows the new rows, each must contain the identifier column
+   * @return the result which contains the count of the written rows
+   */
+  public static Result apply(SQLiteDatabase db, String table, String idColumn,
+                             List<ContentValues> rows) {
+    Result result = new Result(table);
+    if (rows.isEmpty()) {
+      result.deleted = db.delete(table, null, null);
+      return result;
+    }
+
+    Map<String, Long> existing = readHashes(db, table, idColumn);
+    String idSelection = idColumn + SQLQuery.SQL_SEARCH_EQUAL;
+    String idArgs[] = new String[1];
+    for (ContentValues values : rows) {
+      String id = values.getAsString(idColumn);
+      if (id == null)
+        throw new IllegalArgumentException();
+
+      long hash = hash(values);
+      values.put(DBContract.CONTENT_HASH_COLUMN, hash);
+      boolean exists = existing.containsKey(id);
+      Long stored = existing.remove(id);
+      if (!exists) {
+        if (db.insert(table, null, values) == -1) {
+          result.failed++;
+        } else {
+          result.inserted++;
+        }
+      } else if (stored == null || stored != hash) {
+        idArgs[0] = id;
+        db.update(table, values, idSelection, idArgs);
+        result.updated++;
+      } else {
+        result.unchanged++;
+      }
+    }
+
+    if (!existing.isEmpty()) {
+      DBDeltaSync.delete(db, table, idColumn, new ArrayList<String>(existing.keySet()));
+      result.deleted = existing.size();
+    }
+    return result;
+  }
+
+  /**
+   * Reads the identifiers and content hashes of the existing rows.
+   *
+   * @param db the database
+   * @param table the table
+   * @param idColumn the identifier column
+   * @return the content hashes with the identifier as key, the hash is
+   * null if the row has no stored hash
+   */
+  private static Map<String, Long> readHashes(SQLiteDatabase db, String table, String idColumn) {
+    Map<String, Long> hashes = new HashMap<String, Long>();
+    Cursor c = db.query(table, new String[] {idColumn, DBContract.CONTENT_HASH_COLUMN},
+                        null, null, null, null, null);
+    try {
+      while (c.moveToNext()) {
+        hashes.put(c.getString(0), c.isNull(1) ? null : c.getLong(1));
+      }
+    } finally {
+      c.close();
+    }
+    return hashes;
+  }
+
+  /**
+   * Computes the content hash of the given row. The hash contains the
+   * column names and values in the order of the column names, the content
+   * hash column itself is ignored. The values are hashed like they are 
+   * stored by SQLite, so a boolean is hashed as integer.
+   *
+   * @param values the values of the row
+   * @return the content hash
+   */
+  public static long hash(ContentValues values) {
+    String columns[] = values.keySet().toArray(new String[values.size()]);
+    Arrays.sort(columns);
+    long h = FNV_OFFSET;
+    for (String column : columns) {
+      if (DBContract.CONTENT_HASH_COLUMN.equals(column)) {
+        continue;
+      }
+      h = hash(h, column);
+      h = hashValue(h, values.get(column));
+    }
+    return h;
+  }
+
+  /**
+   * Adds the given value to the hash.
+   *
+   * @param h the current hash
+   * @param value the value
+   * @return the new hash
+   */
+  static long hashValue(long h, Object value) {
+    if (value == null) {
+      return hash(h, 0);
+    } else if (value instanceof byte[]) {
+      h = hash(h, 1);
+      for (byte b : (byte[]) value) {
+        h = hash(h, b);
+      }
+      return h;
+    } else if (value instanceof Double || value instanceof Float) {
+      h = hash(h, 2);
+      return hash(h, Double.doubleToLongBits(((Number) value).doubleValue()));
+    } else if (value instanceof Number) {
+      h = hash(h, 3);
+      return hash(h, ((Number) value).longValue());
+    } else if (value instanceof Boolean) {
+      h = hash(h, 3);
+      return hash(h, (Boolean) value ? 1 : 0);
+    }
+    h = hash(h, 4);
+    return hash(h, value.toString());
+  }
+
+  /**
+   * Adds the characters of the given string to the hash.
+   *
+   * @param h the current hash
+   * @param s the string
+   * @return the new hash
+   */
+  private static long hash(long h, String s) {
+    for (int i = 0; i < s.length(); i++) {
+      char ch = s.charAt(i);
+      h = hash(h, ch & 0xff);
+      h = hash(h, ch >>> 8);
+    }
+    return hash(h, s.length());
+  }
+
+  /**
+   * Adds the bytes of the given long value to the hash.
+   *
+   * @param h the current hash
+   * @param v the value
+   * @return the new hash
+   */
+  private static long hash(long h, long v) {
+    for (int i = 0; i < 8; i++) {
+      h ^= (v >>> (i * 8)) & 0xff;
+      h *= FNV_PRIME;
+    }
+    return h;
+  }
+
+  /**
+   * Represents the result of an applied full refresh.
+   */
+  public static class Result {
+
+    /**
+     * The refreshed table.
+     */
+    private final String table;
+
+    /**
+     * The count of the inserted rows.
+     */
+    private int inserted;
+
+    /**
+     * The count of the updated rows.
+     */
+    private int updated;
+
+    /**
+     * The count of the deleted rows.
+     */
+    private int deleted;
+
+    /**
+     * The count of the unchanged rows.
+     */
+    private int unchanged;
+
+    /**
+     * The count of the rows which could not be inserted.
+     */
+    private int failed;
+
+    /**
+     * The ctor to create the result.
+     *
+     * @param table the refreshed table
+     */
+    public Result(String table) {
+      this.table = table;
+    }
+
+    public String getTable() {
+      return table;
+    }
+
+    public int getInserted() {
+      return inserted;
+    }
+
+    public int getUpdated() {
+      return updated;
+    }
+
+    public int getDeleted() {
+      return deleted;
+    }
+
+    public int getUnchanged() {
+      return unchanged;
+    }
+
+    public int getFailed() {
+      return failed;
+    }
+
+    /**
+     * Returns whether the refresh has changed a row.
+     *
+     * @return true if a row was inserted, updated or deleted
+     */
+    public boolean hasChanges() {
+      return inserted + updated + deleted > 0;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: %d inserted, %d updated, %d deleted, %d unchanged, %d failed",
+                           table, inserted, updated, deleted, unchanged, failed);
+    }
+  }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contains the executors on which the database tasks are executed.
+ * The reads are executed on a bounded parallel reader pool and
+ * the writes on a single writer thread. With write-ahead logging the reads
+ * do not wait behind the writes or each other.
+ *
+ * The queued tasks of both executors are ordered by their priority, so
+ * interactive reads and writes do not wait behind queued prefetches or
+ * background synchronizations. A bulk write should be chunked, see
+ * DBChunkedWriter, so interactive writes can run between the chunks.
+ *
+ * The exports, which read pages while they wait for the network, are
+ * executed on an own small pool, so they do not block a reader thread.
+ *
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public final class DBExecutors {
+
+  /**
+   * The maximum count of parallel reader threads.
+   */
+  private static final int MAX_READER_COUNT = 4;
+
+  /**
+   * The count of parallel exporter threads.
+   */
+  private static final int EXPORTER_COUNT = 2;
+
+  /**
+   * The time in seconds after which an idle thread is terminated.
+   */
+  private static final long KEEP_ALIVE_SECONDS = 30;
+
+  /**
+   * The count of the reader threads, bounded by the available processors.
+   */
+  private static final int READER_COUNT = Math.max(2, Math.min(MAX_READER_COUNT,
+          Runtime.getRuntime().availableProcessors()));
+
+  /**
+   * The sequence of the submitted tasks, which keeps the order of tasks
+   * with the same priority.
+   */
+  private static final AtomicLong SEQUENCE = new AtomicLong();
+
+  /**
+   * The thread pool for the database reads.
+   */
+  private static final ThreadPoolExecutor READ_POOL = createPool(READER_COUNT, "db-reader-");
+
+  /**
+   * The thread pool for the database writes.
+   */
+  private static final ThreadPoolExecutor WRITE_POOL = createPool(1, "db-writer-");
+
+  /**
+   * The thread pool for the exports.
+   */
+  private static final ThreadPoolExecutor EXPORT_POOL = createPool(EXPORTER_COUNT, "db-exporter-");
+
+  /**
+   * The executors for the database reads, indexed by the priority.
+   */
+  private static final Executor[] READ_EXECUTORS = createExecutors(READ_POOL);
+
+  /**
+   * The executors for the database writes, indexed by the priority.
+   */
+  private static final Executor[] WRITE_EXECUTORS = createExecutors(WRITE_POOL);
+
+  /**
+   * The executors for the exports, indexed by the priority.
+   */
+  private static final Executor[] EXPORT_EXECUTORS = createExecutors(EXPORT_POOL);
+
+  /**
+   * The private ctor, the class contains only static methods.
+   */
+  private DBExecutors() {
+  }
+
+  /**
+   * Returns the executor for the interactive database reads.
+   *
+   * @return the read executor
+   */
+  public static Executor getReadExecutor() {
+    return getReadExecutor(DBPriority.INTERACTIVE);
+  }
+
+  /**
+   * Returns the executor for the database reads with the given priority.
+   *
+   * @param priority the priority of the reads
+   * @return the read executor
+   */
+  public static Executor getReadExecutor(DBPriority priority) {
+    return READ_EXECUTORS[priority.ordinal()];
+  }
+
+  /**
+   * Returns the executor for the interactive database writes, all writes
+   * are executed sequentially on one thread.
+   *
+   * @return the write executor
+   */
+  public static Executor getWriteExecutor() {
+    return getWriteExecutor(DBPriority.INTERACTIVE);
+  }
+
+  /**
+   * Returns the executor for the database writes with the given priority,
+   * all writes are executed sequentially on one thread.
+   *
+   * @param priority the priority of the writes
+   * @return the write executor
+   */
+  public static Executor getWriteExecutor(DBPriority priority) {
+    return WRITE_EXECUTORS[priority.ordinal()];
+  }
+
+  /**
+   * Returns the executor for the exports with the given priority. 
+   * An export acquires a database connection only for the reading of
+   * each page and waits for the network in between.
+   *
+   * @param priority the priority of the exports
+   * @return the export executor
+   */
+  public static Executor getExportExecutor(DBPriority priority) {
+    return EXPORT_EXECUTORS[priority.ordinal()];
+  }
+
+  /**
+   * Creates a thread pool with the given thread count, which orders the
+   * queued tasks by their priority. Idle threads are terminated after
+   * the keep alive time.
+   *
+   * @param threads the count of threads
+   * @param prefix the prefix of the thread names
+   * @return the created thread pool
+   */
+  private static ThreadPoolExecutor createPool(int threads, String prefix) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+            KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new PriorityBlockingQueue<Runnable>(),
+            new DBThreadFactory(prefix));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Creates for each priority an executor, which submits the tasks with
+   * the priority to the given pool.
+   *
+   * @param pool the thread pool
+   * @return the executors, indexed by the priority
+   */
+  private static Executor[] createExecutors(ThreadPoolExecutor pool) {
+    DBPriority priorities[] = DBPriority.values();
+    Executor executors[] = new Executor[priorities.length];
+    for (DBPriority priority : priorities) {
+      executors[priority.ordinal()] = new PriorityExecutor(pool, priority);
+    }
+    return executors;
+  }
+
+  /**
+   * Represents the executor which submits the tasks with a fixed
+   * priority to a thread pool.
+   */
+  private static class PriorityExecutor implements Executor {
+
+    /**
+     * The thread pool which executes the tasks.
+     */
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * The priority of the submitted tasks.
+     */
+    private final DBPriority priority;
+
+    /**
+     * The ctor to create the priority executor.
+     *
+     * @param pool the thread pool which executes the tasks
+     * @param priority the priority of the submitted tasks
+     */
+    public PriorityExecutor(ThreadPoolExecutor pool, DBPriority priority) {
+      this.pool = pool;
+      this.priority = priority;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      pool.execute(new PriorityTask(command, priority, SEQUENCE.incrementAndGet()));
+    }
+  }
+
+  /**
+   * Represents a queued task, which is ordered by the priority and
+   * the sequence number.
+   */
+  private static class PriorityTask implements Runnable, Comparable<PriorityTask> {
+
+    /**
+     * The wrapped task.
+     */
+    private final Runnable task;
+
+    /**
+     * The priority of the task.
+     */
+    private final DBPriority priority;
+
+    /**
+     * The sequence number of the task.
+     */
+    private final long sequence;
+
+    /**
+     * The ctor to create the priority task.
+     *
+     * @param task the wrapped task
+     * @param priority the priority of the task
+     * @param sequence the sequence number of the task
+     */
+    public PriorityTask(Runnable task, DBPriority priority, long sequence) {
+      this.task = task;
+      this.priority = priority;
+      this.sequence = sequence;
+    }
+
+    @Override
+    public void run() {
+      task.run();
+    }
+
+    @Override
+    public int compareTo(PriorityTask other) {
+      int compare = priority.compareTo(other.priority);
+      if (compare == 0) {
+        compare = sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+      }
+      return compare;
+    }
+  }
+
+  /**
+   * Represents the thread factory for the database threads, which creates
+   * named background threads.
+   */
+  private static class DBThreadFactory implements ThreadFactory {
+
+    /**
+     * The count of the created threads.
+     */
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * The prefix of the thread names.
+     */
+    private final String prefix;
+
+    /**
+     * The ctor to create the thread factory.
+     *
+     * @param prefix the prefix of the thread names
+     */
+    public DBThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(r, prefix + count.incrementAndGet());
+      t.setPriority(Thread.NORM_PRIORITY - 1);
+      return t;
+    }
+  }
+}
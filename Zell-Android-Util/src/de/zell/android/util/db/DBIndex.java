@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+/**
+ * Represents the declaration of a secondary index of a database table.
+ * The indexes should be declared in the DB contract next to the columns
+ * of the table and are created by the DBMigrationRunner.
+ *
+ * @see DBMigrationRunner
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class DBIndex {
+
+  /**
+   * The prefix of the generated index names.
+   */
+  private static final String INDEX_PREFIX = "idx_";
+
+  /**
+   * The name of the index.
+   */
+  private final String name;
+
+  /**
+   * The indexed table.
+   */
+  private final String table;
+
+  /**
+   * The indexed columns.
+   */
+  private final String[] columns;
+
+  /**
+   * The flag indicates whether the index is unique.
+   */
+  private final boolean unique;
+
+  /**
+   * The ctor to create the index declaration.
+   *
+   * @param name the name of the index
+   * @param table the indexed table
+   * @param unique true if the index is unique
+   * @param columns the indexed columns, can contain the sort order
+   */
+  public DBIndex(String name, String table, boolean unique, String... columns) {
+    if (columns == null || columns.length == 0)
+      throw new IllegalArgumentException();
+
+    this.name = name;
+    this.table = table;
+    this.unique = unique;
+    this.columns = columns;
+  }
+
+  /**
+   * Declares a not unique index on the given table and columns. The name
+   * of the index is created from the table and column names.
+   *
+   * @param table the indexed table
+   * @param columns the indexed columns
+   * @return the index declaration
+   */
+  public static DBIndex on(String table, String... columns) {
+    StringBuilder name = new StringBuilder(INDEX_PREFIX).append(table);
+    for (String column : columns) {
+      name.append('_').append(column.trim().split("\\s+")[0]);
+    }
+    return new DBIndex(name.toString(), table, false, columns);
+  }
+
+  /**
+   * Returns the name of the index.
+   *
+   * @return the index name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the indexed table.
+   *
+   * @return the table name
+   */
+  public String getTable() {
+    return table;
+  }
+
+  /**
+   * Returns the statement which creates the index, if it does not exist.
+   *
+   * @return the create statement
+   */
+  public String getCreateStatement() {
+    return String.format(unique ? DBContract.CREATE_UNIQUE_INDEX_STATEMENT
+                                : DBContract.CREATE_INDEX_STATEMENT,
+                         name, table, DBContract.join(columns, ""));
+  }
+
+  /**
+   * Returns the statement which drops the index.
+   *
+   * @return the drop statement
+   */
+  public String getDropStatement() {
+    return String.format(DBContract.DROP_INDEX_STATEMENT, name);
+  }
+}
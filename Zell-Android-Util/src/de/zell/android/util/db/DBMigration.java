@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Represents an incremental schema migration, which migrates the database
+ * from the previous version to the version of the migration. The migration
+ * should keep the existing data, for example via ALTER TABLE or
+ * CREATE INDEX statements.
+ *
+ * @see DBMigrationRunner
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public abstract class DBMigration {
+
+  /**
+   * The database version which is reached after the migration.
+   */
+  private final int version;
+
+  /**
+   * The ctor to create the migration.
+   *
+   * @param version the database version which is reached after the migration
+   */
+  public DBMigration(int version) {
+    this.version = version;
+  }
+
+  /**
+   * Returns the database version which is reached after the migration.
+   *
+   * @return the version
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  /**
+   * Migrates the database to the version of the migration.
+   *
+   * @param db the database which should be migrated
+   */
+  public abstract void migrate(SQLiteDatabase db);
+
+  /**
+   * Creates a migration which executes the given SQL statements.
+   *
+   * @param version the database version which is reached after the migration
+   * @param statements the SQL statements of the migration
+   * @return the migration
+   */
+  public static DBMigration of(int version, final String... statements) {
+    return new DBMigration(version) {
+      @Override
+      public void migrate(SQLiteDatabase db) {
+        for (String statement : statements) {
+          db.execSQL(statement);
+        }
+      }
+    };
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Represents the migration runner, which applies the declared indexes and
+ * the incremental migrations to the database. The runner should be called
+ * from the onCreate and onUpgrade methods of the SQLiteOpenHelper, which
+ * are already executed inside of a transaction.
+ *
+ * On an upgrade only the migrations between the old and the new version
+ * are executed in version order, the existing data stays in the database.
+ * Each version between the old and the new version needs exactly one
+ * migration, otherwise the upgrade fails and the transaction is rolled
+ * back, so the database is not marked as upgraded with a missing schema
+ * change. Afterwards all declared indexes are created if they do not exist, so
+ * the filtered queries stay indexed.
+ *
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class DBMigrationRunner {
+
+  /**
+   * The error message if no migration upgrades to a version.
+   */
+  private static final String MISSING_MIGRATION_MSG = "No migration to version %d!";
+
+  /**
+   * The error message if more than one migration upgrades to a version.
+   */
+  private static final String DUPLICATE_MIGRATION_MSG = "Duplicate migration to version %d!";
+
+  /**
+   * The declared indexes.
+   */
+  private final List<DBIndex> indexes = new ArrayList<DBIndex>();
+
+  /**
+   * The registered migrations.
+   */
+  private final List<DBMigration> migrations = new ArrayList<DBMigration>();
+
+  /**
+   * Declares the given indexes.
+   *
+   * @param index the indexes which should exist
+   * @return the migration runner
+   */
+  public DBMigrationRunner addIndexes(DBIndex... index) {
+    for (DBIndex i : index) {
+      indexes.add(i);
+    }
+    return this;
+  }
+
+  /**
+   * Registers the given migrations.
+   *
+   * @param migration the migrations
+   * @return the migration runner
+   */
+  public DBMigrationRunner addMigrations(DBMigration... migration) {
+    for (DBMigration m : migration) {
+      migrations.add(m);
+    }
+    return this;
+  }
+
+  /**
+   * Creates the declared indexes, should be called after the tables
+   * are created.
+   *
+   * @param db the created database
+   */
+  public void onCreate(SQLiteDatabase db) {
+    createIndexes(db);
+  }
+
+  /**
+   * Executes the migrations with a version greater than the old version
+   * and less or equal than the new version in version order. Afterwards
+   * the declared indexes are created.
+   *
+   * @param db the database which should be upgraded
+   * @param oldVersion the current version of the database
+   * @param newVersion the new version of the database
+   * @throws IllegalStateException if a version between the old and the new
+   * version has no or more than one migration
+   */
+  public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+    for (DBMigration m : getMigrations(oldVersion, newVersion)) {
+      m.migrate(db);
+    }
+    createIndexes(db);
+  }
+
+  /**
+   * Returns the migrations between the given versions in version order.
+   * Each version between the given versions has exactly one migration.
+   *
+   * @param oldVersion the current version, exclusive
+   * @param newVersion the new version, inclusive
+   * @return the migrations
+   * @throws IllegalStateException if a version between the given versions
+   * has no or more than one migration
+   */
+  public List<DBMigration> getMigrations(int oldVersion, int newVersion) {
+    List<DBMigration> result = new ArrayList<DBMigration>();
+    for (DBMigration m : migrations) {
+      if (m.getVersion() > oldVersion && m.getVersion() <= newVersion) {
+        result.add(m);
+      }
+    }
+    Collections.sort(result, new Comparator<DBMigration>() {
+      @Override
+      public int compare(DBMigration arg0, DBMigration arg1) {
+        return arg0.getVersion() < arg1.getVersion() ? -1
+                : (arg0.getVersion() == arg1.getVersion() ? 0 : 1);
+      }
+    });
+
+    int version = oldVersion;
+    for (DBMigration m : result) {
+      if (m.getVersion() == version) {
+        throw new IllegalStateException(String.format(DUPLICATE_MIGRATION_MSG, version));
+      }
+      if (m.getVersion() != version + 1) {
+        throw new IllegalStateException(String.format(MISSING_MIGRATION_MSG, version + 1));
+      }
+      version = m.getVersion();
+    }
+    if (version < newVersion) {
+      throw new IllegalStateException(String.format(MISSING_MIGRATION_MSG, version + 1));
+    }
+    return result;
+  }
+
+  /**
+   * Creates the declared indexes, if they do not exist.
+   *
+   * @param db the database
+   */
+  private void createIndexes(SQLiteDatabase db) {
+    for (DBIndex index : indexes) {
+      db.execSQL(index.getCreateStatement());
+    }
+  }
+}
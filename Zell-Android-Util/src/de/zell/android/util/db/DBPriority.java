@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+/**
+ * Represents the priority classes of the database tasks. Queued tasks
+ * with a higher priority are executed before queued tasks with a lower
+ * priority, tasks with the same priority are executed in order.
+ *
+ * @see DBExecutors
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public enum DBPriority {
+
+  /**
+   * The priority of tasks whose result the user is waiting for,
+   * like the reads of a visible list or a favorite toggle.
+   */
+  INTERACTIVE,
+
+  /**
+   * The priority of tasks whose result is probably needed soon,
+   * like the prefetch of the next page.
+   */
+  PREFETCH,
+
+  /**
+   * The priority of tasks which are not visible to the user,
+   * like the synchronization of the database.
+   */
+  BACKGROUND
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Represents the query monitor, which collects the traces of the executed
+ * SQL queries and publishes them to the registered query listeners.
+ * The monitor is only active if a listener is registered.
+ *
+ * In debug mode the query plan of each query, which is slower than the
+ * slow query threshold, is captured via EXPLAIN QUERY PLAN and full table
+ * scans are flagged. That can be used to find missing indexes.
+ *
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class DBQueryMonitor {
+
+  /**
+   * The default slow query threshold in milliseconds.
+   */
+  public static final long DEFAULT_SLOW_QUERY_THRESHOLD = 50;
+
+  /**
+   * The prefix to get the query plan of a statement.
+   */
+  private static final String EXPLAIN_QUERY_PLAN = "EXPLAIN QUERY PLAN ";
+
+  /**
+   * The column of the query plan which contains the description.
+   */
+  private static final String PLAN_DETAIL_COLUMN = "detail";
+
+  /**
+   * The update statement formula.
+   */
+  private static final String UPDATE_STATEMENT = "UPDATE %s SET %s%s";
+
+  /**
+   * The where clause formula.
+   */
+  private static final String WHERE_CLAUSE = " WHERE %s";
+
+  /**
+   * The count statement formula, to get the row count of a table.
+   */
+  private static final String COUNT_STATEMENT = "SELECT COUNT(*) FROM %s";
+
+  /**
+   * The instance of the DBQueryMonitor class.
+   */
+  private static final DBQueryMonitor instance = new DBQueryMonitor();
+
+  /**
+   * The registered query listeners.
+   */
+  private final List<QueryListener> listeners = new CopyOnWriteArrayList<QueryListener>();
+
+  /**
+   * The slow query threshold in milliseconds.
+   */
+  private volatile long slowQueryThreshold = DEFAULT_SLOW_QUERY_THRESHOLD;
+
+  /**
+   * The flag indicates whether the query plans of slow queries are captured.
+   */
+  private volatile boolean debug;
+
+  /**
+   * The private ctor to create the query monitor.
+   */
+  private DBQueryMonitor() {
+  }
+
+  /**
+   * Returns the instance of the DBQueryMonitor.
+   *
+   * @return the instance
+   */
+  public static DBQueryMonitor getInstance() {
+    return instance;
+  }
+
+  /**
+   * Registers the given query listener.
+   *
+   * @param listener the listener which gets the query traces
+   */
+  public void addQueryListener(QueryListener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Removes the given query listener.
+   *
+   * @param listener the listener which should be removed
+   */
+  public void removeQueryListener(QueryListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Returns whether the monitor is active, that means a listener is
+   * registered.
+   *
+   * @return true if the queries should be traced, false otherwise
+   */
+  public boolean isEnabled() {
+    return !listeners.isEmpty();
+  }
+
+  /**
+   * Sets the slow query threshold. The query plans of queries which are
+   * slower than the threshold are captured in debug mode.
+   *
+   * @param millis the threshold in milliseconds
+   */
+  public void setSlowQueryThreshold(long millis) {
+    this.slowQueryThreshold = millis;
+  }
+
+  public long getSlowQueryThreshold() {
+    return slowQueryThreshold;
+  }
+
+  /**
+   * Enables or disables the debug mode, in which the query plans of
+   * slow queries are captured.
+   *
+   * @param debug true if the query plans should be captured
+   */
+  public void setDebug(boolean debug) {
+    this.debug = debug;
+  }
+
+  public boolean isDebug() {
+    return debug;
+  }
+
+  /**
+   * Traces the executed read query and publishes the trace to the listeners.
+   *
+   * @param db the database on which the query was executed
+   * @param query the executed query
+   * @param durationNanos the execution time in nanoseconds
+   * @param rows the count of returned rows
+   */
+  public void traceRead(SQLiteDatabase db, SQLQuery query, long durationNanos, int rows) {
+    String sql = SQLiteQueryBuilder.buildQueryString(false,
+                    query.getSelectedEntity().getTableName(),
+                    query.getRequestedColumns(), query.getSelection(),
+                    query.getGroupBy(), query.getHaving(), query.getOrderBy(),
+                    query.getLimitClause());
+    publish(db, new QueryTrace(query, sql, false, durationNanos, rows), query.getSelectionArgs());
+  }
+
+  /**
+   * Traces the executed update query and publishes the trace to the listeners.
+   *
+   * @param db the database on which the query was executed
+   * @param query the executed update query
+   * @param durationNanos the execution time in nanoseconds
+   * @param rows the count of updated rows
+   */
+  public void traceUpdate(SQLiteDatabase db, SQLQuery query, long durationNanos, int rows) {
+    ContentValues values = query.getValues();
+    StringBuilder set = new StringBuilder();
+    List<String> args = new ArrayList<String>();
+    if (values != null) {
+      for (Map.Entry<String, Object> entry : values.valueSet()) {
+        if (set.length() > 0) {
+          set.append(", ");
+        }
+        set.append(entry.getKey()).append(" = ?");
+        args.add(entry.getValue() == null ? null : entry.getValue().toString());
+      }
+    }
+    if (query.getSelectionArgs() != null) {
+      for (String arg : query.getSelectionArgs()) {
+        args.add(arg);
+      }
+    }
+
+    String selection = query.getSelection();
+    String sql = String.format(UPDATE_STATEMENT, query.getSelectedEntity().getTableName(), set,
+                               selection == null ? "" : String.format(WHERE_CLAUSE, selection));
+    publish(db, new QueryTrace(query, sql, true, durationNanos, rows),
+            args.toArray(new String[args.size()]));
+  }
+
+  /**
+   * Captures the query plan for slow queries in debug mode and publishes
+   * the trace to all listeners.
+   *
+   * @param db the database on which the query was executed
+   * @param trace the trace of the query
+   * @param args the arguments of the SQL statement
+   */
+  private void publish(SQLiteDatabase db, QueryTrace trace, String[] args) {
+    if (debug && trace.getDurationMillis() >= slowQueryThreshold) {
+      try {
+        explain(db, trace, args);
+      } catch (SQLException ex) {
+        Log.e(DBQueryMonitor.class.getName(), SQLException.class.getName(), ex);
+      }
+    }
+
+    for (QueryListener listener : listeners) {
+      listener.onQueryExecuted(trace);
+    }
+  }
+
+  /**
+   * Captures the query plan of the traced statement. If the plan
+   * contains a full table scan, the scanned rows are set to the row count
+   * of the table.
+   *
+   * @param db the database
+   * @param trace the trace of the query
+   * @param args the arguments of the SQL statement
+   */
+  private void explain(SQLiteDatabase db, QueryTrace trace, String[] args) {
+    List<String> plan = new ArrayList<String>();
+    boolean fullScan = false;
+    Cursor c = db.rawQuery(EXPLAIN_QUERY_PLAN + trace.getSQL(), args);
+    try {
+      int detail = c.getColumnIndex(PLAN_DETAIL_COLUMN);
+      while (c.moveToNext()) {
+        String line = c.getString(detail < 0 ? c.getColumnCount() - 1 : detail);
+        plan.add(line);
+        fullScan |= isFullTableScan(line);
+      }
+    } finally {
+      c.close();
+    }
+
+    trace.setQueryPlan(plan);
+    trace.setFullTableScan(fullScan);
+    if (fullScan) {
+      String table = trace.getQuery().getSelectedEntity().getTableName();
+      trace.setRowsScanned(DatabaseUtils.longForQuery(db,
+                           String.format(COUNT_STATEMENT, table), null));
+    }
+  }
+
+  /**
+   * Checks whether the given line of a query plan describes a table scan
+   * without an index.
+   *
+   * @param line the line of the query plan
+   * @return true if the line describes a full table scan
+   */
+  private static boolean isFullTableScan(String line) {
+    return line != null && line.startsWith("SCAN")
+            && !line.contains("INDEX") && !line.contains("PRIMARY KEY");
+  }
+
+  /**
+   * Represents a listener which gets the traces of the executed queries.
+   */
+  public interface QueryListener {
+
+    /**
+     * Is called after a query was executed, the method is called on the
+     * thread which has executed the query.
+     *
+     * @param trace the trace of the executed query
+     */
+    public void onQueryExecuted(QueryTrace trace);
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.os.AsyncTask;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Represents the read canceller, which holds the outstanding database
+ * reads of a component, like a fragment, and cancels them if the
+ * component is not longer visible. All methods must be called on the
+ * main thread.
+ *
+ * @see AsyncDBListReader#cancelQuery()
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class DBReadCanceller {
+
+  /**
+   * The outstanding readers.
+   */
+  private final List<AsyncDBListReader> readers = new ArrayList<AsyncDBListReader>();
+
+  /**
+   * Registers the given reader, finished readers are removed.
+   *
+   * @param reader the reader which should be cancelled with the other readers
+   */
+  public void register(AsyncDBListReader reader) {
+    Iterator<AsyncDBListReader> it = readers.iterator();
+    while (it.hasNext()) {
+      if (it.next().getStatus() == AsyncTask.Status.FINISHED) {
+        it.remove();
+      }
+    }
+    readers.add(reader);
+  }
+
+  /**
+   * Cancels all outstanding readers.
+   */
+  public void cancelAll() {
+    for (AsyncDBListReader reader : readers) {
+      reader.cancelQuery();
+    }
+    readers.clear();
+  }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+/**
+ * Represents a tuning profile of the SQLite connection, which is applied
+ * via PRAGMA statements if the database is opened. Unset values keep
+ * the SQLite defaults. Pragmas which are not supported by the SQLite
+ * version of the device, like mmap_size before SQLite 3.7.17, are ignored.
+ *
+ * The pragmas are executed as write statements, so they are applied to
+ * the primary connection, which executes all writes. The settings are per
+ * connection, that means the pooled read-only connections, which are used
+ * with write-ahead logging, keep the SQLite defaults. The settings reach
+ * all reads only if write-ahead logging is disabled, so the DAO disables
+ * write-ahead logging per default if the profile is memory mapped.
+ *
+ * The page size only takes effect before the first table is created and
+ * if write-ahead logging is disabled, so the profile should be applied
+ * in SQLiteOpenHelper.onConfigure if the page size is set. It is not set
+ * by the presets.
+ *
+ * @see DBConnectionManager#setTuningProfile(DBTuningProfile)
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class DBTuningProfile {
+
+  /**
+   * The synchronous level which syncs at the critical moments, with
+   * write-ahead logging the database stays consistent on a power loss.
+   */
+  public static final String SYNCHRONOUS_NORMAL = "NORMAL";
+
+  /**
+   * The synchronous level which syncs after each transaction.
+   */
+  public static final String SYNCHRONOUS_FULL = "FULL";
+
+  /**
+   * The synchronous level which never syncs.
+   */
+  public static final String SYNCHRONOUS_OFF = "OFF";
+
+  /**
+   * The temp store which keeps the temporary tables and indices in a file.
+   */
+  public static final String TEMP_STORE_FILE = "FILE";
+
+  /**
+   * The temp store which keeps the temporary tables and indices in memory.
+   */
+  public static final String TEMP_STORE_MEMORY = "MEMORY";
+
+  /**
+   * The pragma statement formula.
+   */
+  private static final String PRAGMA_STATEMENT = "PRAGMA %s = %s";
+
+  /**
+   * The value of unset numeric settings.
+   */
+  private static final long UNSET = -1;
+
+  /**
+   * The maximum size of the memory mapped I/O in bytes.
+   */
+  private long mmapSize = UNSET;
+
+  /**
+   * The page cache size, positive values are pages, negative values KiB.
+   */
+  private long cacheSize = UNSET;
+
+  /**
+   * The page size of a new database in bytes.
+   */
+  private long pageSize = UNSET;
+
+  /**
+   * The temp store.
+   */
+  private String tempStore;
+
+  /**
+   * The synchronous level.
+   */
+  private String synchronous;
+
+  /**
+   * Returns the profile for large read-mostly reference databases, like
+   * catalogs. Reads are memory mapped, which removes a system call and a
+   * copy per page, and the page cache is enlarged. Since the settings
+   * are applied to the primary connection, the DAO disables the 
+   * write-ahead logging for the profile, so the reads use the primary 
+   * connection.
+   *
+   * @return the read heavy catalog profile
+   */
+  public static DBTuningProfile readHeavyCatalog() {
+    DBTuningProfile profile = new DBTuningProfile();
+    profile.setMmapSize(64L * 1024 * 1024);
+    profile.setCacheSize(-8 * 1024);
+    profile.setTempStore(TEMP_STORE_MEMORY);
+    profile.setSynchronous(SYNCHRONOUS_FULL);
+    return profile;
+  }
+
+  /**
+   * Returns the profile for write heavy tables, like logs. The synchronous
+   * level is lowered, so a commit does not wait for each sync, which is
+   * safe with write-ahead logging. The memory mapped I/O is disabled.
+   *
+   * @return the write heavy log profile
+   */
+  public static DBTuningProfile writeHeavyLog() {
+    DBTuningProfile profile = new DBTuningProfile();
+    profile.setMmapSize(0);
+    profile.setCacheSize(-2 * 1024);
+    profile.setTempStore(TEMP_STORE_FILE);
+    profile.setSynchronous(SYNCHRONOUS_NORMAL);
+    return profile;
+  }
+
+  public long getMmapSize() {
+    return mmapSize;
+  }
+
+  /**
+   * Sets the maximum size of the memory mapped I/O, 0 disables the
+   * memory mapped I/O.
+   *
+   * @param mmapSize the size in bytes
+   */
+  public void setMmapSize(long mmapSize) {
+    this.mmapSize = mmapSize;
+  }
+
+  /**
+   * Returns whether the profile enables the memory mapped I/O, which is
+   * only used by the reads if they run on the primary connection.
+   *
+   * @return true if the memory mapped I/O is enabled, false otherwise
+   */
+  public boolean isMemoryMapped() {
+    return mmapSize > 0;
+  }
+
+  public long getCacheSize() {
+    return cacheSize;
+  }
+
+  /**
+   * Sets the size of the page cache.
+   *
+   * @param cacheSize positive values are pages, negative values KiB
+   */
+  public void setCacheSize(long cacheSize) {
+    this.cacheSize = cacheSize;
+  }
+
+  public long getPageSize() {
+    return pageSize;
+  }
+
+  /**
+   * Sets the page size of a new database, must be a power of two
+   * between 512 and 65536. Takes only effect if the profile is applied
+   * before the first table is created and write-ahead logging is disabled,
+   * for example in SQLiteOpenHelper.onConfigure.
+   *
+   * @param pageSize the page size in bytes
+   */
+  public void setPageSize(long pageSize) {
+    this.pageSize = pageSize;
+  }
+
+  public String getTempStore() {
+    return tempStore;
+  }
+
+  /**
+   * Sets the temp store, see TEMP_STORE_FILE and TEMP_STORE_MEMORY.
+   *
+   * @param tempStore the temp store
+   */
+  public void setTempStore(String tempStore) {
+    this.tempStore = tempStore;
+  }
+
+  public String getSynchronous() {
+    return synchronous;
+  }
+
+  /**
+   * Sets the synchronous level, see SYNCHRONOUS_OFF, SYNCHRONOUS_NORMAL
+   * and SYNCHRONOUS_FULL.
+   *
+   * @param synchronous the synchronous level
+   */
+  public void setSynchronous(String synchronous) {
+    this.synchronous = synchronous;
+  }
+
+  /**
+   * Applies the set values of the profile to the primary connection of
+   * the given database. Can also be called in SQLiteOpenHelper.onConfigure.
+   *
+   * @param db the opened database
+   */
+  public void apply(SQLiteDatabase db) {
+    if (pageSize != UNSET) {
+      pragma(db, "page_size", String.valueOf(pageSize));
+    }
+    if (mmapSize != UNSET) {
+      pragmaWithResult(db, "mmap_size", String.valueOf(mmapSize));
+    }
+    if (cacheSize != UNSET) {
+      pragma(db, "cache_size", String.valueOf(cacheSize));
+    }
+    if (tempStore != null) {
+      pragma(db, "temp_store", tempStore);
+    }
+    if (synchronous != null) {
+      pragma(db, "synchronous", synchronous);
+    }
+  }
+
+  /**
+   * Executes the given pragma, which returns no result, on the primary
+   * connection.
+   *
+   * @param db the database
+   * @param name the name of the pragma
+   * @param value the new value
+   */
+  private static void pragma(SQLiteDatabase db, String name, String value) {
+    try {
+      db.execSQL(String.format(PRAGMA_STATEMENT, name, value));
+    } catch (SQLException ex) {
+      Log.e(DBTuningProfile.class.getName(), SQLException.class.getName(), ex);
+    }
+  }
+
+  /**
+   * Executes the given pragma, which returns the new value, on the primary
+   * connection. A statement which returns a row can't be executed via
+   * execSQL.
+   *
+   * @param db the database
+   * @param name the name of the pragma
+   * @param value the new value
+   */
+  private static void pragmaWithResult(SQLiteDatabase db, String name, String value) {
+    try {
+      SQLiteStatement statement = db.compileStatement(String.format(PRAGMA_STATEMENT, name, value));
+      try {
+        statement.simpleQueryForLong();
+      } finally {
+        statement.close();
+      }
+    } catch (SQLException ex) {
+      Log.e(DBTuningProfile.class.getName(), SQLException.class.getName(), ex);
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.content.ContentValues;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents the changes of a table since the last synchronization.
+ * Contains the inserted or updated rows, the identifiers of the deleted
+ * rows and the new change token and ETAG, which are stored after the
+ * changes are applied.
+ *
+ * @see DBDeltaSync
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class DeltaChangeSet {
+
+  /**
+   * The changed table.
+   */
+  private final String table;
+
+  /**
+   * The identifier column of the table.
+   */
+  private final String idColumn;
+
+  /**
+   * The inserted or updated rows.
+   */
+  private final List<ContentValues> upserts = new ArrayList<ContentValues>();
+
+  /**
+   * The identifiers of the deleted rows.
+   */
+  private final List<String> deletes = new ArrayList<String>();
+
+  /**
+   * The new change token.
+   */
+  private String token;
+
+  /**
+   * The new ETAG.
+   */
+  private String etag;
+
+  /**
+   * The ctor to create the change set.
+   *
+   * @param table the changed table
+   * @param idColumn the identifier column of the table
+   */
+  public DeltaChangeSet(String table, String idColumn) {
+    this.table = table;
+    this.idColumn = idColumn;
+  }
+
+  /**
+   * Adds an inserted or updated row, the values must contain the
+   * identifier column.
+   *
+   * @param values the values of the row
+   */
+  public void addUpsert(ContentValues values) {
+    if (values == null || !values.containsKey(idColumn))
+      throw new IllegalArgumentException();
+
+    upserts.add(values);
+  }
+
+  /**
+   * Adds the identifier of a deleted row.
+   *
+   * @param id the identifier of the deleted row
+   */
+  public void addDelete(String id) {
+    deletes.add(id);
+  }
+
+  public String getTable() {
+    return table;
+  }
+
+  public String getIdColumn() {
+    return idColumn;
+  }
+
+  public List<ContentValues> getUpserts() {
+    return upserts;
+  }
+
+  public List<String> getDeletes() {
+    return deletes;
+  }
+
+  public String getToken() {
+    return token;
+  }
+
+  public void setToken(String token) {
+    this.token = token;
+  }
+
+  public String getEtag() {
+    return etag;
+  }
+
+  public void setEtag(String etag) {
+    this.etag = etag;
+  }
+
+  /**
+   * Returns whether the change set contains no changed rows.
+   *
+   * @return true if no row was changed, false otherwise
+   */
+  public boolean isEmpty() {
+    return upserts.isEmpty() && deletes.isEmpty();
+  }
+}
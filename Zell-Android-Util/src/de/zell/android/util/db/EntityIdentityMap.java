@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Represents an identity map for entities, which maps the table and the
+ * identifier of an entity to the loaded entity instance. The same row
+ * yields the same instance, as long as the instance is used somewhere.
+ * The map holds the entities weakly, that means unused entities are
+ * removed by the garbage collector.
+ *
+ * The entities are stored per table, so a lookup does not allocate a
+ * combined key. Entities of tables with a composite primary key should
+ * return a CompositeKey as identifier, those can be looked up by their
+ * components without allocation.
+ *
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class EntityIdentityMap {
+
+  /**
+   * Contains for each table the weak references of the entities
+   * with the identifier as key.
+   */
+  private final Map<String, Map<Object, EntityReference>> tables
+          = new HashMap<String, Map<Object, EntityReference>>();
+
+  /**
+   * The queue which contains the references of the collected entities.
+   */
+  private final ReferenceQueue<Entity> queue = new ReferenceQueue<Entity>();
+
+  /**
+   * The reusable lookup key for composite identifiers.
+   */
+  private final CompositeKey.Probe probe = new CompositeKey.Probe();
+
+  /**
+   * Returns the canonical instance for the given entity. If an instance with
+   * the same table and identifier is already mapped, the mapped instance is
+   * returned, otherwise the given entity is mapped and returned.
+   *
+   * @param e the entity
+   * @return the canonical instance of the entity
+   */
+  public synchronized Entity intern(Entity e) {
+    purge();
+    if (e == null || e.getID() == null || e.getTableName() == null) {
+      return e;
+    }
+
+    Map<Object, EntityReference> entities = tables.get(e.getTableName());
+    if (entities == null) {
+      entities = new HashMap<Object, EntityReference>();
+      tables.put(e.getTableName(), entities);
+    }
+
+    EntityReference ref = entities.get(e.getID());
+    Entity existing = ref == null ? null : ref.get();
+    if (existing != null && existing.getClass() == e.getClass()) {
+      return existing;
+    }
+
+    entities.put(e.getID(), new EntityReference(e, queue));
+    return e;
+  }
+
+  /**
+   * Returns the mapped entity for the given table and identifier.
+   *
+   * @param table the table name
+   * @param id the identifier of the entity
+   * @return the mapped entity or null if no entity is mapped
+   */
+  public synchronized Entity get(String table, Object id) {
+    purge();
+    Map<Object, EntityReference> entities = tables.get(table);
+    if (entities == null) {
+      return null;
+    }
+
+    EntityReference ref = entities.get(id);
+    return ref == null ? null : ref.get();
+  }
+
+  /**
+   * Returns the mapped entity for the given table and composite identifier
+   * with two components. The lookup does not allocate a key.
+   *
+   * @param table the table name
+   * @param first the first component of the identifier
+   * @param second the second component of the identifier
+   * @return the mapped entity or null if no entity is mapped
+   */
+  public synchronized Entity get(String table, Object first, Object second) {
+    purge();
+    Map<Object, EntityReference> entities = tables.get(table);
+    if (entities == null) {
+      return null;
+    }
+
+    EntityReference ref = entities.get(probe.set(first, second));
+    probe.clear();
+    return ref == null ? null : ref.get();
+  }
+
+  /**
+   * Returns whether the given mapped entity contains the values with the
+   * given hash, which were set by the last setValuesHash.
+   *
+   * @param e the mapped entity
+   * @param hash the hash of the values of a read row
+   * @return true if the entity contains the values, false otherwise
+   */
+  public synchronized boolean hasValuesHash(Entity e, long hash) {
+    EntityReference ref = getReference(e);
+    return ref != null && ref.hashed && ref.hash == hash;
+  }
+
+  /**
+   * Sets the hash of the values which are contained by the given mapped
+   * entity. Should be called after the entity was refreshed with the
+   * values of a read row.
+   *
+   * @param e the mapped entity
+   * @param hash the hash of the values
+   */
+  public synchronized void setValuesHash(Entity e, long hash) {
+    EntityReference ref = getReference(e);
+    if (ref != null) {
+      ref.hash = hash;
+      ref.hashed = true;
+    }
+  }
+
+  /**
+   * Returns the reference of the given mapped entity.
+   *
+   * @param e the entity
+   * @return the reference or null if the entity is not mapped
+   */
+  private EntityReference getReference(Entity e) {
+    Map<Object, EntityReference> entities = tables.get(e.getTableName());
+    EntityReference ref = entities == null ? null : entities.get(e.getID());
+    return ref != null && ref.get() == e ? ref : null;
+  }
+
+  /**
+   * Returns the count of the mapped entities.
+   *
+   * @return the count of mapped entities
+   */
+  public synchronized int size() {
+    purge();
+    int size = 0;
+    for (Map<Object, EntityReference> entities : tables.values()) {
+      size += entities.size();
+    }
+    return size;
+  }
+
+  /**
+   * Removes all mapped entities.
+   */
+  public synchronized void clear() {
+    tables.clear();
+  }
+
+  /**
+   * Removes the references of the collected entities.
+   */
+  private void purge() {
+    Reference<? extends Entity> ref;
+    while ((ref = queue.poll()) != null) {
+      EntityReference entityRef = (EntityReference) ref;
+      Map<Object, EntityReference> entities = tables.get(entityRef.table);
+      if (entities != null && entities.get(entityRef.id) == entityRef) {
+        entities.remove(entityRef.id);
+        if (entities.isEmpty()) {
+          tables.remove(entityRef.table);
+        }
+      }
+    }
+  }
+
+  /**
+   * Represents the weak reference of an entity, which remembers the table
+   * and identifier to remove the reference after the entity was collected.
+   */
+  private static class EntityReference extends WeakReference<Entity> {
+
+    /**
+     * The table of the entity.
+     */
+    private final String table;
+
+    /**
+     * The identifier of the entity.
+     */
+    private final Object id;
+
+    /**
+     * The hash of the values which were last set on the entity.
+     */
+    private long hash;
+
+    /**
+     * Indicates whether the hash was set.
+     */
+    private boolean hashed;
+
+    /**
+     * The ctor to create the entity reference.
+     *
+     * @param e the entity
+     * @param queue the queue which gets the reference after the entity was collected
+     */
+    public EntityReference(Entity e, ReferenceQueue<Entity> queue) {
+      super(e, queue);
+      this.table = e.getTableName();
+      this.id = e.getID();
+    }
+  }
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.content.ContentValues;
+import android.database.SQLException;
+import android.util.Log;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Represents the binary codec of the entity snapshots. A snapshot contains
+ * the values of all DBColumn annotated fields of an entity, written with
+ * a DataOutputStream in the order of the fields. The snapshot starts with
+ * the schema hash of the class, snapshots of another class version are not
+ * decoded and should be rewritten.
+ *
+ * The snapshots are stored in the DBContract.SNAPSHOT_COLUMN of a table,
+ * which is created with DBContract.createSnapshotStatements.
+ *
+ * @see SnapshotCursorExtractor
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class EntitySnapshotCodec {
+
+  /**
+   * The charset of the encoded strings.
+   */
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  /**
+   * The length which marks a null string or byte array.
+   */
+  private static final int NULL_LENGTH = -1;
+
+  /**
+   * The error log message if a snapshot has another schema.
+   */
+  private static final String SCHEMA_MISMATCH_MSG = "Snapshot of class %s has another schema!";
+
+  /**
+   * The error message if an entity can not be encoded.
+   */
+  private static final String ENCODE_FAILED_MSG = "Entity of class %s can not be encoded: %s";
+
+  /**
+   * Contains the codecs for the used entity classes.
+   */
+  private static final Map<Class, EntitySnapshotCodec> CODECS = new HashMap<Class, EntitySnapshotCodec>();
+
+  /**
+   * The column mapping of the entity class.
+   */
+  private final AnnotatedCursorExtractor.ColumnMapping mapping;
+
+  /**
+   * The entity class.
+   */
+  private final Class entityClass;
+
+  /**
+   * The hash of the column names and field types, which identifies the
+   * schema of the snapshot.
+   */
+  private final int schemaHash;
+
+  /**
+   * The ctor to create the codec for the given class.
+   *
+   * @param c the entity class which contains DBColumn annotated fields
+   */
+  private EntitySnapshotCodec(Class c) {
+    this.entityClass = c;
+    this.mapping = AnnotatedCursorExtractor.getMapping(c);
+    int hash = 1;
+    for (int i = 0; i < mapping.columns.length; i++) {
+      hash = 31 * hash + mapping.columns[i].hashCode();
+      hash = 31 * hash + mapping.fields[i].getType().getName().hashCode();
+    }
+    this.schemaHash = hash;
+  }
+
+  /**
+   * Returns the codec for the given class, the codec is created on the
+   * first call and reused for all following calls. The codec is thread safe.
+   *
+   * @param c the entity class which contains DBColumn annotated fields
+   * @return the codec for the given class
+   */
+  public static EntitySnapshotCodec forClass(Class c) {
+    synchronized (CODECS) {
+      EntitySnapshotCodec codec = CODECS.get(c);
+      if (codec == null) {
+        codec = new EntitySnapshotCodec(c);
+        CODECS.put(c, codec);
+      }
+      return codec;
+    }
+  }
+
+  /**
+   * Encodes the annotated fields of the given entity. If a field can not
+   * be encoded a SQLException is thrown, so the transaction which stores
+   * the snapshot is aborted instead of storing a truncated snapshot.
+   *
+   * @param entity the entity
+   * @return the snapshot
+   * @throws SQLException if the entity can not be encoded
+   */
+  public byte[] encode(Object entity) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    try {
+      out.writeInt(schemaHash);
+      for (int i = 0; i < mapping.fields.length; i++) {
+        write(out, mapping.kinds[i], mapping.fields[i].get(entity));
+      }
+      out.flush();
+    } catch (IOException ex) {
+      Log.e(EntitySnapshotCodec.class.getName(), IOException.class.getName(), ex);
+      throw new SQLException(String.format(ENCODE_FAILED_MSG, entityClass.getName(), ex));
+    } catch (IllegalAccessException ex) {
+      Log.e(EntitySnapshotCodec.class.getName(), IllegalAccessException.class.getName(), ex);
+      throw new SQLException(String.format(ENCODE_FAILED_MSG, entityClass.getName(), ex));
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Decodes the given snapshot into a new entity.
+   *
+   * @param snapshot the snapshot
+   * @return the entity or null if the snapshot has another schema
+   */
+  public Object decode(byte[] snapshot) {
+    if (snapshot == null) {
+      return null;
+    }
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot));
+    try {
+      if (in.readInt() != schemaHash) {
+        Log.e(EntitySnapshotCodec.class.getName(),
+              String.format(SCHEMA_MISMATCH_MSG, entityClass.getName()));
+        return null;
+      }
+
+      Object entity = mapping.newInstance();
+      if (entity == null) {
+        return null;
+      }
+      for (int i = 0; i < mapping.fields.length; i++) {
+        read(in, mapping.kinds[i], mapping.fields[i], entity);
+      }
+      return entity;
+    } catch (IOException ex) {
+      Log.e(EntitySnapshotCodec.class.getName(), IOException.class.getName(), ex);
+    } catch (IllegalAccessException ex) {
+      Log.e(EntitySnapshotCodec.class.getName(), IllegalAccessException.class.getName(), ex);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the values of the snapshot row for the given entity, which
+   * contains the identifier, the key columns and the snapshot.
+   *
+   * @param entity the entity
+   * @param idColumn the identifier column
+   * @param keyColumns the indexed key columns
+   * @return the values which can be inserted into the snapshot table
+   */
+  public ContentValues toContentValues(Object entity, String idColumn, String... keyColumns) {
+    ContentValues values = new ContentValues();
+    AnnotatedCursorExtractor.put(values, idColumn, AnnotatedCursorExtractor.getValue(entity, idColumn));
+    for (String key : keyColumns) {
+      AnnotatedCursorExtractor.put(values, key, AnnotatedCursorExtractor.getValue(entity, key));
+    }
+    values.put(DBContract.SNAPSHOT_COLUMN, encode(entity));
+    return values;
+  }
+
+  /**
+   * Writes the given field value.
+   *
+   * @param out the output stream
+   * @param kind the kind of the field
+   * @param value the value of the field
+   * @throws IOException if the value can't be written
+   */
+  private static void write(DataOutputStream out, int kind, Object value) throws IOException {
+    switch (kind) {
+      case AnnotatedCursorExtractor.KIND_STRING:
+        writeBytes(out, value == null ? null : ((String) value).getBytes(UTF8));
+        break;
+      case AnnotatedCursorExtractor.KIND_LONG:
+        out.writeLong((Long) value);
+        break;
+      case AnnotatedCursorExtractor.KIND_INT:
+        out.writeInt((Integer) value);
+        break;
+      case AnnotatedCursorExtractor.KIND_SHORT:
+        out.writeShort((Short) value);
+        break;
+      case AnnotatedCursorExtractor.KIND_DOUBLE:
+        out.writeDouble((Double) value);
+        break;
+      case AnnotatedCursorExtractor.KIND_FLOAT:
+        out.writeFloat((Float) value);
+        break;
+      case AnnotatedCursorExtractor.KIND_BOOLEAN:
+        out.writeBoolean((Boolean) value);
+        break;
+      case AnnotatedCursorExtractor.KIND_BLOB:
+        writeBytes(out, (byte[]) value);
+        break;
+      default:
+        out.writeBoolean(value != null);
+        if (value instanceof Long) {
+          out.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+          out.writeInt((Integer) value);
+        } else if (value instanceof Short) {
+          out.writeShort((Short) value);
+        } else if (value instanceof Double) {
+          out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+          out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+          out.writeBoolean((Boolean) value);
+        }
+    }
+  }
+
+  /**
+   * Reads the value of the given field.
+   *
+   * @param in the input stream
+   * @param kind the kind of the field
+   * @param f the field
+   * @param entity the entity which gets the value
+   * @throws IOException if the value can't be read
+   * @throws IllegalAccessException if the field can't be set
+   */
+  private static void read(DataInputStream in, int kind, Field f, Object entity)
+          throws IOException, IllegalAccessException {
+    switch (kind) {
+      case AnnotatedCursorExtractor.KIND_STRING:
+        byte[] str = readBytes(in);
+        f.set(entity, str == null ? null : new String(str, UTF8));
+        break;
+      case AnnotatedCursorExtractor.KIND_LONG:
+        f.setLong(entity, in.readLong());
+        break;
+      case AnnotatedCursorExtractor.KIND_INT:
+        f.setInt(entity, in.readInt());
+        break;
+      case AnnotatedCursorExtractor.KIND_SHORT:
+        f.setShort(entity, in.readShort());
+        break;
+      case AnnotatedCursorExtractor.KIND_DOUBLE:
+        f.setDouble(entity, in.readDouble());
+        break;
+      case AnnotatedCursorExtractor.KIND_FLOAT:
+        f.setFloat(entity, in.readFloat());
+        break;
+      case AnnotatedCursorExtractor.KIND_BOOLEAN:
+        f.setBoolean(entity, in.readBoolean());
+        break;
+      case AnnotatedCursorExtractor.KIND_BLOB:
+        f.set(entity, readBytes(in));
+        break;
+      default:
+        f.set(entity, in.readBoolean() ? readBoxed(in, f.getType()) : null);
+    }
+  }
+
+  /**
+   * Reads the value of a boxed primitive field.
+   *
+   * @param in the input stream
+   * @param type the wrapper type of the field
+   * @return the boxed value
+   * @throws IOException if the value can't be read
+   */
+  private static Object readBoxed(DataInputStream in, Class type) throws IOException {
+    if (type == Long.class) {
+      return in.readLong();
+    } else if (type == Integer.class) {
+      return in.readInt();
+    } else if (type == Short.class) {
+      return in.readShort();
+    } else if (type == Double.class) {
+      return in.readDouble();
+    } else if (type == Float.class) {
+      return in.readFloat();
+    } else {
+      return in.readBoolean();
+    }
+  }
+
+  /**
+   * Writes the given bytes with a leading length.
+   *
+   * @param out the output stream
+   * @param bytes the bytes, can be null
+   * @throws IOException if the bytes can't be written
+   */
+  private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+    if (bytes == null) {
+      out.writeInt(NULL_LENGTH);
+    } else {
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * Reads bytes with a leading length.
+   *
+   * @param in the input stream
+   * @return the bytes or null
+   * @throws IOException if the bytes can't be read
+   */
+  private static byte[] readBytes(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length == NULL_LENGTH) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return bytes;
+  }
+}
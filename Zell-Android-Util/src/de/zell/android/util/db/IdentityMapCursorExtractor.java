@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.database.Cursor;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents a cursor extractor which consults an identity map, so the same
+ * row yields the same entity instance across queries. The extraction is
+ * delegated to another extractor.
+ *
+ * If the delegate is an AnnotatedCursorExtractor or a SnapshotCursorExtractor
+ * the already mapped instance is refreshed with the values of the current
+ * row, otherwise the mapped instance is returned unchanged. The mapped
+ * instance is shared with the UI, so it is not changed on the reader
+ * thread. The extractor collects the rows whose values differ from the
+ * mapped instance and the reader copies them in one step with refresh,
+ * on the main thread before the result is delivered.
+ *
+ * Rows which are equal to the mapped instance are detected by the hash of
+ * the values, which the identity map keeps for each instance. For an
+ * AnnotatedCursorExtractor the instance of an equal row is reused for the
+ * next row, so reading mapped and unchanged rows does not allocate.
+ * Changes of a mapped instance which are not written to the database
+ * are not detected, the instance is only refreshed if the row changes.
+ *
+ * An extractor collects the rows of one read, so a new extractor must be
+ * used for each read.
+ *
+ * @see EntityIdentityMap
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class IdentityMapCursorExtractor implements CursorExtracting {
+
+  /**
+   * The extractor which extracts the entities.
+   */
+  private final CursorExtracting extract;
+
+  /**
+   * The identity map which contains the canonical instances.
+   */
+  private final EntityIdentityMap identityMap;
+
+  /**
+   * The collected refreshes of the mapped instances.
+   */
+  private final List<Refresh> refreshes = new ArrayList<Refresh>();
+
+  /**
+   * The instance which is reused for the next row, can be null.
+   */
+  private Object scratch;
+
+  /**
+   * The ctor to create the identity map cursor extractor.
+   *
+   * @param extract the extractor which extracts the entities
+   * @param identityMap the identity map which contains the canonical instances
+   */
+  public IdentityMapCursorExtractor(CursorExtracting extract, EntityIdentityMap identityMap) {
+    this.extract = extract;
+    this.identityMap = identityMap;
+  }
+
+  @Override
+  public Object extract(Cursor c) {
+    final boolean reused = scratch != null;
+    final Object o = nextInstance(c);
+    scratch = null;
+    if (!(o instanceof Entity)) {
+      return o;
+    }
+
+    final Entity canonical = identityMap.intern((Entity) o);
+    if (!isRefreshable() || canonical.getClass() != o.getClass()) {
+      return canonical;
+    }
+
+    int indexes[] = getIndexes();
+    long hash = AnnotatedCursorExtractor.hashValues(o, indexes);
+    if (canonical == o) {
+      if (reused) {
+        AnnotatedCursorExtractor.clearUnreadValues(o, indexes);
+      }
+      identityMap.setValuesHash(canonical, hash);
+    } else if (!identityMap.hasValuesHash(canonical, hash)) {
+      refreshes.add(new Refresh(o, canonical, indexes, hash));
+    } else if (extract instanceof AnnotatedCursorExtractor) {
+      scratch = o;
+    }
+    return canonical;
+  }
+
+  /**
+   * Copies the values of the collected rows to the mapped instances.
+   * Must be called on the main thread, after the read and before the
+   * result is delivered.
+   */
+  public void refresh() {
+    for (Refresh r : refreshes) {
+      AnnotatedCursorExtractor.copyValues(r.values, r.canonical, r.indexes);
+      identityMap.setValuesHash(r.canonical, r.hash);
+    }
+    refreshes.clear();
+  }
+
+  /**
+   * Extracts the current row, into the reusable instance if it exists.
+   *
+   * @param c the cursor which points to the row
+   * @return the extracted instance
+   */
+  private Object nextInstance(Cursor c) {
+    if (scratch != null) {
+      ((AnnotatedCursorExtractor) extract).extractInto(scratch, c);
+      return scratch;
+    }
+    return extract.extract(c);
+  }
+
+  /**
+   * Returns the column indexes which were read by the delegate.
+   *
+   * @return the indexes or null if all fields were read
+   */
+  private int[] getIndexes() {
+    return extract instanceof AnnotatedCursorExtractor
+           ? ((AnnotatedCursorExtractor) extract).getResolvedIndexes()
+           : null;
+  }
+
+  /**
+   * Returns whether the mapped instances can be refreshed with the
+   * values of the extracted instances.
+   *
+   * @return true if the delegate extracts DBColumn annotated fields
+   */
+  private boolean isRefreshable() {
+    return extract instanceof AnnotatedCursorExtractor
+        || extract instanceof SnapshotCursorExtractor;
+  }
+
+  /**
+   * Represents the refresh of a mapped instance with the values of a row.
+   */
+  private static class Refresh {
+
+    /**
+     * The instance which contains the values of the row.
+     */
+    private final Object values;
+
+    /**
+     * The mapped instance.
+     */
+    private final Entity canonical;
+
+    /**
+     * The column indexes which were read, null if all fields were read.
+     */
+    private final int[] indexes;
+
+    /**
+     * The hash of the values of the row.
+     */
+    private final long hash;
+
+    /**
+     * The ctor to create the refresh.
+     *
+     * @param values the instance which contains the values of the row
+     * @param canonical the mapped instance
+     * @param indexes the column indexes which were read
+     * @param hash the hash of the values of the row
+     */
+    public Refresh(Object values, Entity canonical, int[] indexes, long hash) {
+      this.values = values;
+      this.canonical = canonical;
+      this.indexes = indexes;
+      this.hash = hash;
+    }
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.os.Handler;
+import java.util.List;
+
+/**
+ * Represents an observed SQL query, which re-runs and re-delivers the result
+ * if a write touches the selected table. The re-query is debounced, so a
+ * burst of writes triggers only one refresh. Results of a refresh are only
+ * delivered if no newer refresh was started, so a stale result never
+ * overrides a newer one.
+ *
+ * The live query is created via DAO.observe and must be cancelled
+ * if the result is not longer needed.
+ *
+ * @see DAO#observe(SQLQuery, AsyncDBListReader.PostExecuteJob)
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class LiveQuery implements Runnable {
+
+  /**
+   * The DAO which executes the query.
+   */
+  private final DAO dao;
+
+  /**
+   * The observed query.
+   */
+  private SQLQuery query;
+
+  /**
+   * The job which gets each delivered result.
+   */
+  private final AsyncDBListReader.PostExecuteJob postJob;
+
+  /**
+   * The handler of the main thread, which is used to debounce the refreshes.
+   */
+  private final Handler handler;
+
+  /**
+   * The debounce time in milliseconds.
+   */
+  private final long debounce;
+
+  /**
+   * The canceller which holds the running read.
+   */
+  private final DBReadCanceller canceller = new DBReadCanceller();
+
+  /**
+   * The sequence number of the last started refresh.
+   */
+  private int sequence;
+
+  /**
+   * The flag indicates whether the live query was cancelled.
+   */
+  private volatile boolean cancelled;
+
+  /**
+   * The flag indicates whether a started refresh has not delivered yet.
+   */
+  private boolean refreshing;
+
+  /**
+   * The ctor to create the live query.
+   *
+   * @param dao the DAO which executes the query
+   * @param query the observed query
+   * @param postJob the job which gets each delivered result
+   * @param handler the handler of the main thread
+   * @param debounce the debounce time in milliseconds
+   */
+  LiveQuery(DAO dao, SQLQuery query, AsyncDBListReader.PostExecuteJob postJob,
+            Handler handler, long debounce) {
+    this.dao = dao;
+    this.query = query;
+    this.postJob = postJob;
+    this.handler = handler;
+    this.debounce = debounce;
+  }
+
+  public SQLQuery getQuery() {
+    return query;
+  }
+
+  /**
+   * Replaces the observed query, the new query must select the same table,
+   * for example the same query with a larger limit after a further page
+   * was loaded. The new query is executed at the next refresh. A running
+   * refresh of the old query is dropped and restarted with the new query.
+   * Must be called on the main thread.
+   *
+   * @param query the new observed query
+   */
+  public void setQuery(SQLQuery query) {
+    if (query == null || !getTable().equals(query.getSelectedEntity().getTableName()))
+      throw new IllegalArgumentException();
+
+    this.query = query;
+    if (refreshing) {
+      refresh();
+    }
+  }
+
+  /**
+   * Returns the table which is observed.
+   *
+   * @return the observed table
+   */
+  public String getTable() {
+    return query.getSelectedEntity().getTableName();
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Schedules a refresh after the debounce time. A pending refresh is
+   * postponed, so a burst of changes triggers one refresh.
+   * Can be called from any thread.
+   */
+  void onTableChanged() {
+    if (cancelled) {
+      return;
+    }
+    handler.removeCallbacks(this);
+    handler.postDelayed(this, debounce);
+  }
+
+  /**
+   * Executes the query and delivers the result, if no newer refresh was
+   * started in the meantime. A still running read of the previous refresh
+   * is cancelled. Must be called on the main thread.
+   */
+  void refresh() {
+    if (cancelled) {
+      return;
+    }
+
+    canceller.cancelAll();
+    final int current = ++sequence;
+    refreshing = true;
+    dao.getSelection(new AsyncDBListReader.PostExecuteJob() {
+      @Override
+      public void doJob(List result) {
+        if (!cancelled && current == sequence) {
+          refreshing = false;
+          postJob.doJob(result);
+        }
+      }
+    }, query, canceller);
+  }
+
+  @Override
+  public void run() {
+    refresh();
+  }
+
+  /**
+   * Cancels the live query, pending refreshes are dropped, the running
+   * read is cancelled and no further result is delivered.
+   * Must be called on the main thread.
+   */
+  public void cancel() {
+    cancelled = true;
+    handler.removeCallbacks(this);
+    canceller.cancelAll();
+    dao.removeLiveQuery(this);
+  }
+}
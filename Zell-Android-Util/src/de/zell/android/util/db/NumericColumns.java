@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.database.Cursor;
+
+/**
+ * Represents the columnar result of a numeric query. Each requested column
+ * is stored in a growable primitive array of the column type, so the values
+ * are read without a per row allocation.
+ *
+ * The getters return the backing arrays, which can be longer than the
+ * row count. Only the first size() values are valid.
+ *
+ * @see AsyncDBColumnReader
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class NumericColumns {
+
+  /**
+   * The column type for long values.
+   */
+  public static final int TYPE_LONG = 0;
+
+  /**
+   * The column type for double values.
+   */
+  public static final int TYPE_DOUBLE = 1;
+
+  /**
+   * The column type for int values.
+   */
+  public static final int TYPE_INT = 2;
+
+  /**
+   * The minimum capacity of the columns.
+   */
+  private static final int MIN_CAPACITY = 16;
+
+  /**
+   * The types of the columns.
+   */
+  private final int[] types;
+
+  /**
+   * The long columns, the entry is null if the column has another type.
+   */
+  private final long[][] longs;
+
+  /**
+   * The double columns, the entry is null if the column has another type.
+   */
+  private final double[][] doubles;
+
+  /**
+   * The int columns, the entry is null if the column has another type.
+   */
+  private final int[][] ints;
+
+  /**
+   * The count of the read rows.
+   */
+  private int size;
+
+  /**
+   * The ctor to create the numeric columns.
+   *
+   * @param capacity the initial capacity of the columns
+   * @param types the types of the columns, in the order of the requested columns
+   */
+  public NumericColumns(int capacity, int... types) {
+    if (types == null || types.length == 0)
+      throw new IllegalArgumentException();
+
+    this.types = types.clone();
+    longs = new long[types.length][];
+    doubles = new double[types.length][];
+    ints = new int[types.length][];
+    capacity = Math.max(capacity, MIN_CAPACITY);
+    for (int i = 0; i < types.length; i++) {
+      switch (types[i]) {
+        case TYPE_LONG:
+          longs[i] = new long[capacity];
+          break;
+        case TYPE_DOUBLE:
+          doubles[i] = new double[capacity];
+          break;
+        case TYPE_INT:
+          ints[i] = new int[capacity];
+          break;
+        default:
+          throw new IllegalArgumentException();
+      }
+    }
+  }
+
+  /**
+   * Appends the values of the current cursor row, the cursor columns must
+   * be in the order of the column types. Null values are read as zero.
+   *
+   * @param c the cursor which points to the row
+   */
+  void read(Cursor c) {
+    if (size == capacity()) {
+      grow();
+    }
+
+    for (int i = 0; i < types.length; i++) {
+      switch (types[i]) {
+        case TYPE_LONG:
+          longs[i][size] = c.getLong(i);
+          break;
+        case TYPE_DOUBLE:
+          doubles[i][size] = c.getDouble(i);
+          break;
+        default:
+          ints[i][size] = c.getInt(i);
+          break;
+      }
+    }
+    size++;
+  }
+
+  /**
+   * Returns the current capacity of the columns.
+   *
+   * @return the capacity
+   */
+  private int capacity() {
+    switch (types[0]) {
+      case TYPE_LONG:
+        return longs[0].length;
+      case TYPE_DOUBLE:
+        return doubles[0].length;
+      default:
+        return ints[0].length;
+    }
+  }
+
+  /**
+   * Doubles the capacity of all columns.
+   */
+  private void grow() {
+    int capacity = capacity() * 2;
+    for (int i = 0; i < types.length; i++) {
+      switch (types[i]) {
+        case TYPE_LONG:
+          long[] l = new long[capacity];
+          System.arraycopy(longs[i], 0, l, 0, size);
+          longs[i] = l;
+          break;
+        case TYPE_DOUBLE:
+          double[] d = new double[capacity];
+          System.arraycopy(doubles[i], 0, d, 0, size);
+          doubles[i] = d;
+          break;
+        default:
+          int[] n = new int[capacity];
+          System.arraycopy(ints[i], 0, n, 0, size);
+          ints[i] = n;
+          break;
+      }
+    }
+  }
+
+  /**
+   * Returns the count of the read rows, which is the count of valid
+   * values in each column.
+   *
+   * @return the row count
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the count of columns.
+   *
+   * @return the column count
+   */
+  public int getColumnCount() {
+    return types.length;
+  }
+
+  /**
+   * Returns the type of the given column.
+   *
+   * @param column the index of the column
+   * @return the column type
+   */
+  public int getType(int column) {
+    return types[column];
+  }
+
+  /**
+   * Returns the backing array of the given long column.
+   *
+   * @param column the index of the column
+   * @return the values, only the first size() values are valid
+   */
+  public long[] getLongColumn(int column) {
+    if (types[column] != TYPE_LONG)
+      throw new IllegalArgumentException();
+
+    return longs[column];
+  }
+
+  /**
+   * Returns the backing array of the given double column.
+   *
+   * @param column the index of the column
+   * @return the values, only the first size() values are valid
+   */
+  public double[] getDoubleColumn(int column) {
+    if (types[column] != TYPE_DOUBLE)
+      throw new IllegalArgumentException();
+
+    return doubles[column];
+  }
+
+  /**
+   * Returns the backing array of the given int column.
+   *
+   * @param column the index of the column
+   * @return the values, only the first size() values are valid
+   */
+  public int[] getIntColumn(int column) {
+    if (types[column] != TYPE_INT)
+      throw new IllegalArgumentException();
+
+    return ints[column];
+  }
+}
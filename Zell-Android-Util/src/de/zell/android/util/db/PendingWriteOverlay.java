@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.content.ContentValues;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Represents the overlay of the pending entity updates. The values of an
+ * update are added to the overlay when the update is issued and are
+ * removed after the update was written. The entities which are delivered
+ * by DAO.getSelection, DAO.search and DAO.export are merged with the
+ * overlay, so a query which is executed right after an update returns the
+ * new values, even if the update is not written yet. The scalar and column
+ * reads of the DAO, like count, aggregate, getNumericSelection and
+ * loadLazyColumn, are not merged and return the stored values.
+ *
+ * Only updates with a selection of the form "column = ?" and one selection
+ * argument are added, the pending values are keyed by the table, the
+ * column and the argument. The values are merged into each delivered
+ * entity whose field of the column has the value of the argument, so an
+ * update which changes several rows is merged into all of them. Updates
+ * with another selection are written, but are not merged. A written value
+ * is only removed if no later update of the same column is pending.
+ *
+ * The delivered entities are not changed, an entity with pending values
+ * is replaced by a copy, since the entities can be shared by the query
+ * cache and the identity map.
+ *
+ * @see DAO#updateEntity(SQLQuery)
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class PendingWriteOverlay {
+
+  /**
+   * The pattern of the supported selection, which compares one column
+   * with one argument.
+   */
+  private static final Pattern ROW_SELECTION = Pattern.compile("^\\s*(\\w+)\\s*=\\s*\\?\\s*$");
+
+  /**
+   * Contains for each table the pending updates in the order of the
+   * updates, keyed by the selected column and argument.
+   */
+  private final Map<String, LinkedHashMap<RowKey, ContentValues>> tables
+          = new HashMap<String, LinkedHashMap<RowKey, ContentValues>>();
+
+  /**
+   * Adds the values of the given update query to the overlay. Queries
+   * without a supported selection are ignored.
+   *
+   * @param query the update query
+   */
+  public synchronized void add(SQLQuery query) {
+    RowKey key = RowKey.forQuery(query);
+    if (key == null) {
+      return;
+    }
+
+    String table = query.getSelectedEntity().getTableName();
+    LinkedHashMap<RowKey, ContentValues> pending = tables.get(table);
+    if (pending == null) {
+      pending = new LinkedHashMap<RowKey, ContentValues>();
+      tables.put(table, pending);
+    }
+
+    ContentValues values = pending.remove(key);
+    if (values == null) {
+      values = new ContentValues(query.getValues());
+    } else {
+      values.putAll(query.getValues());
+    }
+    pending.put(key, values);
+  }
+
+  /**
+   * Removes the values of the given written update query from the overlay.
+   * Values which were overridden by a later update stay in the overlay.
+   *
+   * @param query the written update query
+   */
+  public synchronized void remove(SQLQuery query) {
+    RowKey key = RowKey.forQuery(query);
+    if (key == null) {
+      return;
+    }
+
+    String table = query.getSelectedEntity().getTableName();
+    Map<RowKey, ContentValues> pending = tables.get(table);
+    ContentValues values = pending == null ? null : pending.get(key);
+    if (values == null) {
+      return;
+    }
+
+    for (Map.Entry<String, Object> written : query.getValues().valueSet()) {
+      String column = written.getKey();
+      Object value = values.get(column);
+      if (values.containsKey(column)
+              && (value == null ? written.getValue() == null : value.equals(written.getValue()))) {
+        values.remove(column);
+      }
+    }
+    if (values.size() == 0) {
+      pending.remove(key);
+      if (pending.isEmpty()) {
+        tables.remove(table);
+      }
+    }
+  }
+
+  /**
+   * Returns whether an update of the given table is pending.
+   *
+   * @param table the table name
+   * @return true if an update is pending, false otherwise
+   */
+  public synchronized boolean hasPendingWrites(String table) {
+    return tables.containsKey(table);
+  }
+
+  /**
+   * Merges the pending values into the given entities of the given table.
+   * The given list and entities are not changed, if an entity has pending
+   * values a new list is returned which contains a copy of the entity with
+   * the pending values. The entities must contain DBColumn annotated fields.
+   *
+   * @param table the table of the entities
+   * @param entities the delivered entities
+   * @return the given list or a new list with the merged entities
+   */
+  public synchronized List apply(String table, List entities) {
+    Map<RowKey, ContentValues> pending = tables.get(table);
+    if (pending == null || entities == null) {
+      return entities;
+    }
+
+    List merged = null;
+    for (int i = 0; i < entities.size(); i++) {
+      Object o = entities.get(i);
+      Object copy = apply(table, pending, o);
+      if (copy != o && merged == null) {
+        merged = new ArrayList(entities);
+      }
+      if (merged != null) {
+        merged.set(i, copy);
+      }
+    }
+    return merged == null ? entities : merged;
+  }
+
+  /**
+   * Merges the pending values into the given entity of the given table.
+   * The given entity is not changed, if the entity has pending values
+   * a copy with the pending values is returned.
+   *
+   * @param table the table of the entity
+   * @param entity the delivered entity, can be null
+   * @return the given entity or the merged copy
+   */
+  public synchronized Object apply(String table, Object entity) {
+    Map<RowKey, ContentValues> pending = tables.get(table);
+    return pending == null ? entity : apply(table, pending, entity);
+  }
+
+  /**
+   * Merges the matching pending values into a copy of the given entity.
+   *
+   * @param table the table of the entity
+   * @param pending the pending values of the table
+   * @param o the delivered entity
+   * @return the given entity or the merged copy
+   */
+  private static Object apply(String table, Map<RowKey, ContentValues> pending, Object o) {
+    if (!(o instanceof Entity) || !table.equals(((Entity) o).getTableName())) {
+      return o;
+    }
+
+    Object copy = o;
+    for (Map.Entry<RowKey, ContentValues> entry : pending.entrySet()) {
+      if (entry.getKey().matches(o)) {
+        if (copy == o) {
+          copy = AnnotatedCursorExtractor.copy(o);
+          if (copy == null) {
+            return o;
+          }
+        }
+        AnnotatedCursorExtractor.applyValues(copy, entry.getValue());
+      }
+    }
+    return copy;
+  }
+
+  /**
+   * Represents the key of the pending values, which contains the selected
+   * column and the selection argument of an update.
+   */
+  private static class RowKey {
+
+    /**
+     * The selected column.
+     */
+    private final String column;
+
+    /**
+     * The selection argument.
+     */
+    private final String argument;
+
+    /**
+     * The ctor to create the row key.
+     *
+     * @param column the selected column
+     * @param argument the selection argument
+     */
+    private RowKey(String column, String argument) {
+      this.column = column;
+      this.argument = argument;
+    }
+
+    /**
+     * Returns the key of the given update query.
+     *
+     * @param query the update query
+     * @return the key or null if the selection is not supported
+     */
+    static RowKey forQuery(SQLQuery query) {
+      String args[] = query.getSelectionArgs();
+      if (query.getSelectedEntity() == null || query.getValues() == null
+              || query.getSelection() == null || args == null || args.length != 1
+              || args[0] == null) {
+        return null;
+      }
+
+      Matcher m = ROW_SELECTION.matcher(query.getSelection());
+      return m.matches() ? new RowKey(m.group(1), args[0]) : null;
+    }
+
+    /**
+     * Checks whether the field of the selected column of the given entity
+     * has the value of the selection argument.
+     *
+     * @param entity the entity
+     * @return true if the update selects the entity, false otherwise
+     */
+    boolean matches(Object entity) {
+      Object value = AnnotatedCursorExtractor.getValue(entity, column);
+      if (value instanceof Boolean) {
+        value = (Boolean) value ? 1 : 0;
+      }
+      return value != null && argument.equals(value.toString());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof RowKey)) {
+        return false;
+      }
+      RowKey other = (RowKey) o;
+      return column.equals(other.column) && argument.equals(other.argument);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * column.hashCode() + argument.hashCode();
+    }
+  }
+}
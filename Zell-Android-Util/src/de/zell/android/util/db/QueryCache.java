@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents a least recently used cache for the results of SQL queries.
+ * The cache is bounded by the count of entries and by the estimated size
+ * of all results. The entries are invalidated per table.
+ *
+ * Each table has a generation which is incremented on every invalidation.
+ * A result is only cached if the generation of the table has not changed
+ * since the query was started, so a read which overlaps with a write can't
+ * store an outdated result.
+ *
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class QueryCache {
+
+  /**
+   * The maximum count of cached results.
+   */
+  private final int maxEntries;
+
+  /**
+   * The maximum estimated size of all cached results.
+   */
+  private final int maxSize;
+
+  /**
+   * The estimated size of all cached results.
+   */
+  private int size;
+
+  /**
+   * The cached results in access order, the first entry is the least
+   * recently used.
+   */
+  private final LinkedHashMap<String, CacheEntry> entries
+          = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+
+  /**
+   * The generations of the tables.
+   */
+  private final Map<String, Long> generations = new HashMap<String, Long>();
+
+  /**
+   * The ctor to create the query cache.
+   *
+   * @param maxEntries the maximum count of cached results
+   * @param maxSize the maximum estimated size of all cached results
+   */
+  public QueryCache(int maxEntries, int maxSize) {
+    this.maxEntries = maxEntries;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns the current generation of the given table. The generation
+   * should be read before the query is started and passed to the put method.
+   *
+   * @param table the table name
+   * @return the generation of the table
+   */
+  public synchronized long getGeneration(String table) {
+    Long generation = generations.get(table);
+    return generation == null ? 0 : generation;
+  }
+
+  /**
+   * Returns a copy of the cached result for the given key.
+   *
+   * @param key the key of the query
+   * @return the cached result or null if no result is cached
+   */
+  public synchronized List get(String key) {
+    CacheEntry entry = entries.get(key);
+    return entry == null ? null : new ArrayList(entry.result);
+  }
+
+  /**
+   * Removes the cached result for the given key and returns it.
+   *
+   * @param key the key of the query
+   * @return the removed result or null if no result is cached
+   */
+  public synchronized List remove(String key) {
+    CacheEntry entry = entries.remove(key);
+    if (entry == null) {
+      return null;
+    }
+    size -= entry.size;
+    return entry.result;
+  }
+
+  /**
+   * Caches the given result. The result is not cached if the table was
+   * invalidated since the given generation or the result is larger than
+   * the maximum size. The least recently used results are evicted until
+   * the cache fits into the bounds.
+   *
+   * @param key the key of the query
+   * @param table the table of the query
+   * @param result the result of the query
+   * @param estimatedSize the estimated size of the result
+   * @param generation the generation of the table before the query was started
+   */
+  public synchronized void put(String key, String table, List result,
+                               int estimatedSize, long generation) {
+    if (result == null || estimatedSize > maxSize
+            || generation != getGeneration(table)) {
+      return;
+    }
+
+    CacheEntry old = entries.put(key, new CacheEntry(table, new ArrayList(result), estimatedSize));
+    if (old != null) {
+      size -= old.size;
+    }
+    size += estimatedSize;
+    trim();
+  }
+
+  /**
+   * Evicts the least recently used results until the cache fits
+   * into the bounds.
+   */
+  private void trim() {
+    Iterator<CacheEntry> it = entries.values().iterator();
+    while (it.hasNext() && (entries.size() > maxEntries || size > maxSize)) {
+      size -= it.next().size;
+      it.remove();
+    }
+  }
+
+  /**
+   * Invalidates all cached results of the given table.
+   *
+   * @param table the table which was changed
+   */
+  public synchronized void invalidate(String table) {
+    generations.put(table, getGeneration(table) + 1);
+    Iterator<CacheEntry> it = entries.values().iterator();
+    while (it.hasNext()) {
+      CacheEntry entry = it.next();
+      if (entry.table.equals(table)) {
+        size -= entry.size;
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Removes all cached results.
+   */
+  public synchronized void clear() {
+    for (String table : generations.keySet()) {
+      generations.put(table, generations.get(table) + 1);
+    }
+    entries.clear();
+    size = 0;
+  }
+
+  /**
+   * Returns the count of the cached results.
+   *
+   * @return the count of cached results
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Represents a cached result with the corresponding table and
+   * estimated size.
+   */
+  private static class CacheEntry {
+
+    /**
+     * The table of the query.
+     */
+    private final String table;
+
+    /**
+     * The result of the query.
+     */
+    private final List result;
+
+    /**
+     * The estimated size of the result.
+     */
+    private final int size;
+
+    /**
+     * The ctor to create the cache entry.
+     *
+     * @param table the table of the query
+     * @param result the result of the query
+     * @param size the estimated size of the result
+     */
+    public CacheEntry(String table, List result, int size) {
+      this.table = table;
+      this.result = result;
+      this.size = size;
+    }
+  }
+}
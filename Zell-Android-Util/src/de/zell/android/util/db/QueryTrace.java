@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents the trace of an executed SQL query, which contains the
+ * execution time, the row counts and, for slow queries in debug mode,
+ * the query plan.
+ *
+ * @see DBQueryMonitor
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class QueryTrace {
+
+  /**
+   * The executed query.
+   */
+  private final SQLQuery query;
+
+  /**
+   * The executed SQL statement.
+   */
+  private final String sql;
+
+  /**
+   * The flag indicates whether the query was an update.
+   */
+  private final boolean update;
+
+  /**
+   * The execution time in nanoseconds.
+   */
+  private final long durationNanos;
+
+  /**
+   * The count of returned or updated rows.
+   */
+  private final int rowsReturned;
+
+  /**
+   * The count of scanned rows.
+   */
+  private long rowsScanned;
+
+  /**
+   * The query plan, empty if the plan was not captured.
+   */
+  private List<String> queryPlan = Collections.emptyList();
+
+  /**
+   * The flag indicates whether the query plan contains a full table scan.
+   */
+  private boolean fullTableScan;
+
+  /**
+   * The ctor to create the query trace.
+   *
+   * @param query the executed query
+   * @param sql the executed SQL statement
+   * @param update true if the query was an update
+   * @param durationNanos the execution time in nanoseconds
+   * @param rowsReturned the count of returned or updated rows
+   */
+  public QueryTrace(SQLQuery query, String sql, boolean update,
+                    long durationNanos, int rowsReturned) {
+    this.query = query;
+    this.sql = sql;
+    this.update = update;
+    this.durationNanos = durationNanos;
+    this.rowsReturned = rowsReturned;
+    this.rowsScanned = rowsReturned;
+  }
+
+  public SQLQuery getQuery() {
+    return query;
+  }
+
+  public String getSQL() {
+    return sql;
+  }
+
+  public boolean isUpdate() {
+    return update;
+  }
+
+  public long getDurationNanos() {
+    return durationNanos;
+  }
+
+  /**
+   * Returns the execution time in milliseconds.
+   *
+   * @return the execution time
+   */
+  public long getDurationMillis() {
+    return durationNanos / 1000000;
+  }
+
+  public int getRowsReturned() {
+    return rowsReturned;
+  }
+
+  /**
+   * Returns the count of scanned rows. For a full table scan the count
+   * is the row count of the table, otherwise the count of returned rows.
+   *
+   * @return the count of scanned rows
+   */
+  public long getRowsScanned() {
+    return rowsScanned;
+  }
+
+  void setRowsScanned(long rowsScanned) {
+    this.rowsScanned = rowsScanned;
+  }
+
+  /**
+   * Returns the lines of the query plan, the plan is only captured
+   * for slow queries in debug mode.
+   *
+   * @return the query plan
+   */
+  public List<String> getQueryPlan() {
+    return queryPlan;
+  }
+
+  void setQueryPlan(List<String> queryPlan) {
+    this.queryPlan = queryPlan;
+  }
+
+  /**
+   * Returns whether the captured query plan contains a full table scan,
+   * which indicates a missing index.
+   *
+   * @return true if the table is fully scanned, false otherwise
+   */
+  public boolean isFullTableScan() {
+    return fullTableScan;
+  }
+
+  void setFullTableScan(boolean fullTableScan) {
+    this.fullTableScan = fullTableScan;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d ms, %d rows returned, %d rows scanned%s: %s",
+                         getDurationMillis(), rowsReturned, rowsScanned,
+                         fullTableScan ? ", full table scan" : "", sql);
+  }
+}
@@ -17,6 +17,7 @@
 package de.zell.android.util.db;
 
 import android.content.ContentValues;
+import android.database.sqlite.SQLiteQueryBuilder;
 import java.io.Serializable;
 
 /**
@@ -53,6 +54,42 @@ public class SQLQuery implements Serializable {
    * The SQL percentage operator which will be used with the LIKE operator.
    */
   public static final String SQL_VARIABLE_EXP = "%";
+  /**
+   * The SQL count aggregate, which counts all selected rows.
+   */
+  public static final String SQL_COUNT = "COUNT(*)";
+  /**
+   * The SQL sum aggregate formula, the argument is the summed column.
+   */
+  public static final String SQL_SUM = "SUM(%s)";
+  /**
+   * The SQL minimum aggregate formula, the argument is the column.
+   */
+  public static final String SQL_MIN = "MIN(%s)";
+  /**
+   * The SQL maximum aggregate formula, the argument is the column.
+   */
+  public static final String SQL_MAX = "MAX(%s)";
+  /**
+   * The SQL average aggregate formula, the argument is the column.
+   */
+  public static final String SQL_AVG = "AVG(%s)";
+  /**
+   * The SQL exists statement formula, the argument is the sub query.
+   */
+  private static final String SQL_EXISTS = "SELECT EXISTS (%s)";
+  /**
+   * The constant column which is selected in the exists sub query.
+   */
+  private static final String SQL_CONSTANT_COLUMN = "1";
+  /**
+   * The separator of the cache key parts.
+   */
+  private static final char CACHE_KEY_SEPARATOR = '\u0000';
+  /**
+   * The separator between the length and the value of a cache key value.
+   */
+  private static final char LENGTH_SEP = ':';
   /**
    * The requested columns from the SQL query.
    */
@@ -86,6 +123,18 @@ public class SQLQuery implements Serializable {
    * column as key and value as value.
    */
   private ContentValues values;
+  /**
+   * The maximum count of selected rows, 0 means no limit.
+   */
+  private int limit;
+  /**
+   * The count of skipped rows, is only used with a limit.
+   */
+  private int offset;
+  /**
+   * The priority with which the query is executed.
+   */
+  private DBPriority priority = DBPriority.INTERACTIVE;
 
   /**
    * The ctor to construct a SQLQuery object.
@@ -164,6 +213,96 @@ public class SQLQuery implements Serializable {
     this.requestedColumns = requestedColumns;
   }
 
+  /**
+   * Returns the maximum count of selected rows.
+   * 
+   * @return the maximum count of rows, 0 means no limit
+   */
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Sets the maximum count of selected rows, which is the page size
+   * of a paged query.
+   * 
+   * @param limit the maximum count of rows, 0 means no limit
+   */
+  public void setLimit(int limit) {
+    this.limit = limit;
+  }
+
+  /**
+   * Returns the count of skipped rows.
+   * 
+   * @return the count of skipped rows
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  /**
+   * Sets the count of skipped rows, which is the start of the page
+   * of a paged query. Is only used with a limit.
+   * 
+   * @param offset the count of skipped rows
+   */
+  public void setOffset(int offset) {
+    this.offset = offset;
+  }
+
+  /**
+   * Returns the priority with which the query is executed by the DAO.
+   * 
+   * @return the priority of the query
+   */
+  public DBPriority getPriority() {
+    return priority;
+  }
+
+  /**
+   * Sets the priority with which the query is executed by the DAO.
+   * Is per default INTERACTIVE.
+   * 
+   * @param priority the priority of the query
+   */
+  public void setPriority(DBPriority priority) {
+    this.priority = priority;
+  }
+
+  /**
+   * Returns the limit clause of the query, which contains the offset and
+   * the limit.
+   * 
+   * @return the limit clause or null if the query has no limit
+   */
+  public String getLimitClause() {
+    if (limit <= 0) {
+      return null;
+    }
+    return offset > 0 ? offset + "," + limit : String.valueOf(limit);
+  }
+
+  /**
+   * Returns a copy of the query with the given offset, which can be 
+   * used to select another page of a paged query. The update values 
+   * are not copied.
+   * 
+   * @param offset the offset of the page
+   * @return the query of the page
+   */
+  public SQLQuery withOffset(int offset) {
+    SQLQuery page = new SQLQuery(selection, selectedEntity, requestedColumns);
+    page.selectionArgs = selectionArgs;
+    page.orderBy = orderBy;
+    page.groupBy = groupBy;
+    page.having = having;
+    page.limit = limit;
+    page.offset = offset;
+    page.priority = priority;
+    return page;
+  }
+
   /**
    * Added values for the update query to the SQLQuery.
    * 
@@ -177,4 +316,135 @@ public class SQLQuery implements Serializable {
 
     values.put(columnName, value);
   }
+
+  /**
+   * Returns the SQL statement which computes the given aggregate expression
+   * over the selected rows of the query. The requested columns and the
+   * group by, having and order by clauses are ignored, so the
+   * statement returns one row with one value.
+   * 
+   * @param aggregate the aggregate expression, like SQL_COUNT
+   * @return the aggregate SQL statement
+   */
+  public String getAggregateStatement(String aggregate) {
+    return SQLiteQueryBuilder.buildQueryString(false, selectedEntity.getTableName(),
+                                               new String[] {aggregate}, selection,
+                                               null, null, null, null);
+  }
+
+  /**
+   * Returns the SQL statement which checks whether the query selects
+   * at least one row. The statement returns 1 if a row exists, 0 otherwise.
+   * 
+   * @return the exists SQL statement
+   */
+  public String getExistsStatement() {
+    return String.format(SQL_EXISTS, 
+                         SQLiteQueryBuilder.buildQueryString(false, selectedEntity.getTableName(),
+                                                             new String[] {SQL_CONSTANT_COLUMN},
+                                                             selection, null, null, null, "1"));
+  }
+
+  /**
+   * Returns the normalized key of the query, which identifies the
+   * result of the query. The key contains the table, the requested columns,
+   * the selection with the arguments, the group by, having and order by
+   * clauses and the limit. The update values and the priority are not
+   * part of the key.
+   * 
+   * @return the normalized key
+   */
+  public String getCacheKey() {
+    StringBuilder key = new StringBuilder();
+    key.append(selectedEntity == null ? null : selectedEntity.getTableName());
+    appendKeyPart(key, requestedColumns);
+    appendKeyPart(key, normalize(selection));
+    appendKeyPart(key, selectionArgs);
+    appendKeyPart(key, normalize(groupBy));
+    appendKeyPart(key, normalize(having));
+    appendKeyPart(key, normalize(orderBy));
+    appendKeyPart(key, getLimitClause());
+    return key.toString();
+  }
+
+  /**
+   * Appends the given key part with a leading separator to the key.
+   * 
+   * @param key the key
+   * @param part the part of the key
+   */
+  private static void appendKeyPart(StringBuilder key, String part) {
+    key.append(CACHE_KEY_SEPARATOR);
+    appendKeyValue(key, part);
+  }
+
+  /**
+   * Appends the given key parts with a leading separator to the key.
+   * 
+   * @param key the key
+   * @param parts the parts of the key
+   */
+  private static void appendKeyPart(StringBuilder key, String[] parts) {
+    key.append(CACHE_KEY_SEPARATOR);
+    if (parts != null) {
+      key.append(parts.length);
+      for (String part : parts) {
+        key.append(LENGTH_SEP);
+        appendKeyValue(key, part);
+      }
+    }
+  }
+
+  /**
+   * Appends the given value with its length as prefix to the key, so 
+   * values which contain separators can't produce the same key.
+   * 
+   * @param key the key
+   * @param value the value, can be null
+   */
+  private static void appendKeyValue(StringBuilder key, String value) {
+    if (value == null) {
+      key.append('-');
+    } else {
+      key.append(value.length()).append(LENGTH_SEP).append(value);
+    }
+  }
+
+  /**
+   * Normalizes the given clause, that means the surrounding whitespaces are
+   * removed and each whitespace sequence is replaced by a single space.
+   * The content of quoted string literals and identifiers is not changed.
+   * 
+   * @param clause the clause which should be normalized
+   * @return the normalized clause
+   */
+  private static String normalize(String clause) {
+    if (clause == null) {
+      return null;
+    }
+    
+    String trimmed = clause.trim();
+    StringBuilder normalized = new StringBuilder(trimmed.length());
+    char quote = 0;
+    boolean whitespace = false;
+    for (int i = 0; i < trimmed.length(); i++) {
+      char c = trimmed.charAt(i);
+      if (quote == 0 && Character.isWhitespace(c)) {
+        whitespace = true;
+        continue;
+      }
+      
+      if (whitespace) {
+        normalized.append(' ');
+        whitespace = false;
+      }
+      if (quote == 0 && (c == '\'' || c == '"')) {
+        quote = c;
+      } else if (c == quote) {
+        quote = 0;
+      }
+      normalized.append(c);
+    }
+    return normalized.toString();
+  }
 }
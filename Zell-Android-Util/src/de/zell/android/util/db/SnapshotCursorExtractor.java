@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.database.Cursor;
+import android.util.Log;
+
+/**
+ * Represents the cursor extractor for snapshot tables, which decodes
+ * the entity from the snapshot column of each row, instead of mapping
+ * each column to a field. Rows with a snapshot of another schema are
+ * logged and extracted as null, the DAO removes them from the result 
+ * before it is delivered.
+ *
+ * @see EntitySnapshotCodec
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class SnapshotCursorExtractor implements CursorExtracting {
+
+  /**
+   * The error message if the snapshot of a row could not be decoded.
+   */
+  private static final String UNDECODABLE_SNAPSHOT_MSG 
+          = "The snapshot of row %d could not be decoded as %s!";
+
+  /**
+   * The entity class.
+   */
+  private final Class type;
+
+  /**
+   * The codec of the entity class.
+   */
+  private final EntitySnapshotCodec codec;
+
+  /**
+   * The cursor for which the snapshot column index was resolved.
+   */
+  private Cursor cursor;
+
+  /**
+   * The index of the snapshot column in the current cursor.
+   */
+  private int index;
+
+  /**
+   * The ctor to create the snapshot cursor extractor.
+   *
+   * @param c the entity class
+   */
+  public SnapshotCursorExtractor(Class c) {
+    this.type = c;
+    this.codec = EntitySnapshotCodec.forClass(c);
+  }
+
+  @Override
+  public Object extract(Cursor c) {
+    if (c != cursor) {
+      index = c.getColumnIndexOrThrow(DBContract.SNAPSHOT_COLUMN);
+      cursor = c;
+    }
+    Object o = codec.decode(c.getBlob(index));
+    if (o == null) {
+      Log.e(SnapshotCursorExtractor.class.getName(),
+            String.format(UNDECODABLE_SNAPSHOT_MSG, c.getPosition(), type.getName()));
+    }
+    return o;
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+/**
+ * Represents a listener which is notified if a database table was changed
+ * by a write.
+ *
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public interface TableChangeListener {
+
+  /**
+   * Is called after the given tables were changed. The method can be called
+   * from the thread which has executed the write.
+   *
+   * @param tables the names of the changed tables
+   */
+  public void onTablesChanged(String... tables);
+}
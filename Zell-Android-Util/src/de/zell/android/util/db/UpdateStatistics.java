@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Represents the statistics of the entity updates with dirty tracking.
+ * Counts the executed updates and the dropped updates, which would not
+ * have changed a stored value.
+ *
+ * @see AsyncDBEntityUpdater
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class UpdateStatistics {
+
+  /**
+   * The count of the executed updates.
+   */
+  private final AtomicLong executed = new AtomicLong();
+
+  /**
+   * The count of the dropped no-op updates.
+   */
+  private final AtomicLong dropped = new AtomicLong();
+
+  /**
+   * Counts an executed update.
+   */
+  void countExecuted() {
+    executed.incrementAndGet();
+  }
+
+  /**
+   * Counts a dropped no-op update.
+   */
+  void countDropped() {
+    dropped.incrementAndGet();
+  }
+
+  /**
+   * Returns the count of the executed updates.
+   *
+   * @return the executed update count
+   */
+  public long getExecutedCount() {
+    return executed.get();
+  }
+
+  /**
+   * Returns the count of the dropped no-op updates.
+   *
+   * @return the dropped update count
+   */
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  /**
+   * Resets the counters.
+   */
+  public void reset() {
+    executed.set(0);
+    dropped.set(0);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d updates executed, %d no-op updates dropped",
+                         executed.get(), dropped.get());
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2015 Christopher Zell <zelldon91@googlemail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.zell.android.util.db;
+
+import android.content.ContentValues;
+import android.os.Handler;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents the write coalescer, which collects rapid updates of the same
+ * rows and writes only the final values once the debounce window has passed.
+ * The updates are keyed by the table and the selection with its arguments,
+ * the values of later updates override the values of earlier updates
+ * column by column. All methods must be called on the main thread.
+ *
+ * @see DAO#coalesceUpdate(SQLQuery)
+ * @author Christopher Zell <zelldon91@googlemail.com>
+ */
+public class WriteCoalescer implements Runnable {
+
+  /**
+   * The DAO which executes the coalesced updates.
+   */
+  private final DAO dao;
+
+  /**
+   * The handler of the main thread, which is used to debounce the writes.
+   */
+  private final Handler handler;
+
+  /**
+   * The debounce window in milliseconds.
+   */
+  private final long window;
+
+  /**
+   * The pending updates, keyed by the updated rows.
+   */
+  private final Map<String, SQLQuery> pending = new LinkedHashMap<String, SQLQuery>();
+
+  /**
+   * The ctor to create the write coalescer.
+   *
+   * @param dao the DAO which executes the coalesced updates
+   * @param handler the handler of the main thread
+   * @param window the debounce window in milliseconds
+   */
+  WriteCoalescer(DAO dao, Handler handler, long window) {
+    this.dao = dao;
+    this.handler = handler;
+    this.window = window;
+  }
+
+  /**
+   * Adds the given update query. If an update of the same rows is pending,
+   * the values are merged, otherwise the update is queued. The write is
+   * executed after the debounce window, which is restarted by each update.
+   *
+   * @param query the update query
+   */
+  public void update(SQLQuery query) {
+    if (query == null || query.getValues() == null)
+      throw new IllegalArgumentException();
+
+    String key = getKey(query);
+    SQLQuery update = pending.get(key);
+    if (update == null) {
+      update = new SQLQuery(query.getSelection(), query.getSelectedEntity(), null);
+      update.setSelectionArgs(query.getSelectionArgs());
+      update.setValues(new ContentValues(query.getValues()));
+      pending.put(key, update);
+    } else {
+      update.getValues().putAll(query.getValues());
+    }
+
+    handler.removeCallbacks(this);
+    handler.postDelayed(this, window);
+  }
+
+  /**
+   * Returns whether an update is pending.
+   *
+   * @return true if an update is pending, false otherwise
+   */
+  public boolean hasPendingUpdates() {
+    return !pending.isEmpty();
+  }
+
+  /**
+   * Writes all pending updates immediately. Should be called if the
+   * component which issues the updates is paused.
+   */
+  public void flush() {
+    handler.removeCallbacks(this);
+    List<SQLQuery> updates = new ArrayList<SQLQuery>(pending.values());
+    pending.clear();
+    for (SQLQuery update : updates) {
+      dao.updateEntity(update);
+    }
+  }
+
+  @Override
+  public void run() {
+    flush();
+  }
+
+  /**
+   * Returns the key of the rows which are updated by the given query.
+   *
+   * @param query the update query
+   * @return the key, which contains the table and the selection with
+   * its arguments
+   */
+  private static String getKey(SQLQuery query) {
+    SQLQuery rows = new SQLQuery(query.getSelection(), query.getSelectedEntity(), null);
+    rows.setSelectionArgs(query.getSelectionArgs());
+    return rows.getCacheKey();
+  }
+}
@@ -20,10 +20,17 @@ import android.content.Context;
 import android.os.Bundle;
 import android.support.v4.app.ListFragment;
 import android.view.View;
+import android.widget.AbsListView;
 import android.widget.ListView;
 import de.zell.android.util.activities.ViewFragmentBroadcaster;
 import de.zell.android.util.adapters.EntityListAdapter;
+import de.zell.android.util.db.AsyncDBListReader;
+import de.zell.android.util.db.DAO;
+import de.zell.android.util.db.DBReadCanceller;
 import de.zell.android.util.db.Entity;
+import de.zell.android.util.db.LiveQuery;
+import de.zell.android.util.db.SQLQuery;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -48,6 +55,11 @@ public abstract class EntityListFragment extends ListFragment implements Nameabl
    * The tag key for the entities content.
    */
   private static final String TAG_ENTITIES_CONTENT = "entities.content";
+  /**
+   * The default count of items before the end of the list, at which the
+   * next page is prefetched.
+   */
+  protected static final int DEFAULT_PREFETCH_DISTANCE = 10;
   /**
    * The index of the current showed entity.
    */
@@ -70,6 +82,27 @@ public abstract class EntityListFragment extends ListFragment implements Nameabl
    */
   private ActionBarTitleManager barManager;
   
+  /**
+   * The live query which observes the entities, if the entities are
+   * loaded from the database.
+   */
+  private LiveQuery liveQuery;
+  
+  /**
+   * The canceller which holds the outstanding database reads of the fragment.
+   */
+  private final DBReadCanceller readCanceller = new DBReadCanceller();
+  
+  /**
+   * The cache key of the last prefetched page.
+   */
+  private String prefetchedKey;
+  
+  /**
+   * The cache key of the page which is currently loaded.
+   */
+  private String loadingKey;
+  
   /**
    * Returns the url which identifies the content of the entities. The url is
    * used to download the content.
@@ -96,6 +129,27 @@ public abstract class EntityListFragment extends ListFragment implements Nameabl
     View v = this.getListView().getChildAt(0);
     top = (v == null) ? 0 : v.getTop();
     ViewFragmentBroadcaster.boradcastHideFragment(getActivity());
+    if (isRemoving() || getActivity().isFinishing()) {
+      readCanceller.cancelAll();
+    }
+  }
+
+  @Override
+  public void onDestroy() {
+    super.onDestroy();
+    readCanceller.cancelAll();
+  }
+  
+  /**
+   * Returns the canceller which holds the outstanding database reads of the
+   * fragment. Reads which are started in loadEntities should be registered,
+   * so they are cancelled if the user navigates away from the fragment.
+   * 
+   * @return the read canceller
+   * @see DAO#getSelection(AsyncDBListReader.PostExecuteJob, SQLQuery, DBReadCanceller)
+   */
+  protected DBReadCanceller getReadCanceller() {
+    return readCanceller;
   }
 
   @Override
@@ -123,10 +177,146 @@ public abstract class EntityListFragment extends ListFragment implements Nameabl
     }
   }
 
+  @Override
+  public void onViewCreated(View view, Bundle savedInstanceState) {
+    super.onViewCreated(view, savedInstanceState);
+    getListView().setOnScrollListener(new AbsListView.OnScrollListener() {
+      @Override
+      public void onScrollStateChanged(AbsListView view, int scrollState) {
+      }
+
+      @Override
+      public void onScroll(AbsListView view, int firstVisibleItem,
+                           int visibleItemCount, int totalItemCount) {
+        int remaining = totalItemCount - (firstVisibleItem + visibleItemCount);
+        if (totalItemCount > 0 && remaining <= 0) {
+          loadNextPage();
+        } else if (remaining <= getPrefetchDistance()) {
+          prefetchNextPage();
+        }
+      }
+    });
+  }
+  
+  /**
+   * Prefetches the next page of the entities query on the read executor,
+   * so the page is delivered from the page cache if it is loaded.
+   * Each page is prefetched only once.
+   */
+  private void prefetchNextPage() {
+    SQLQuery next = getNextPageQuery();
+    DAO dao = getDAO();
+    if (next == null || dao == null) {
+      return;
+    }
+    
+    String key = next.getCacheKey();
+    if (!key.equals(prefetchedKey)) {
+      prefetchedKey = key;
+      dao.prefetch(next);
+    }
+  }
+
+  /**
+   * Loads the next page of the entities query, if the user has scrolled to
+   * the end of the list, and appends the page to the list. The page is
+   * delivered from the page cache if it was prefetched. Afterwards the 
+   * live query observes all loaded pages.
+   */
+  private void loadNextPage() {
+    SQLQuery next = getNextPageQuery();
+    DAO dao = getDAO();
+    if (next == null || dao == null) {
+      return;
+    }
+    
+    final String key = next.getCacheKey();
+    if (key.equals(loadingKey)) {
+      return;
+    }
+    
+    loadingKey = key;
+    dao.getSelection(new AsyncDBListReader.PostExecuteJob() {
+      @Override
+      public void doJob(List result) {
+        if (!key.equals(loadingKey)) {
+          return;
+        }
+        
+        loadingKey = null;
+        if (result == null || result.isEmpty() || entities == null) {
+          return;
+        }
+        
+        List<Entity> loaded = new ArrayList<Entity>(entities);
+        loaded.addAll(result);
+        entities = loaded;
+        if (getListAdapter() instanceof EntityListAdapter) {
+          ((EntityListAdapter) getListAdapter()).setEntities(entities);
+        }
+        if (liveQuery != null) {
+          liveQuery.setQuery(getObservedQuery());
+        }
+      }
+    }, next, readCanceller);
+  }
+
   @Override
   public void onStart() {
     super.onStart(); 
     barManager.setActionBarTitle(getActivity().getActionBar());
+    observeEntities();
+  }
+
+  @Override
+  public void onStop() {
+    super.onStop();
+    if (liveQuery != null) {
+      liveQuery.cancel();
+      liveQuery = null;
+    }
+  }
+  
+  /**
+   * Observes the entities query, if the entities are loaded from the
+   * database. The list is updated each time the entity table changes.
+   */
+  private void observeEntities() {
+    SQLQuery query = getObservedQuery();
+    DAO dao = getDAO();
+    if (query == null || dao == null) {
+      return;
+    }
+    
+    liveQuery = dao.observe(query, new AsyncDBListReader.PostExecuteJob() {
+      @Override
+      public void doJob(List result) {
+        if (result != null) {
+          entities = result;
+          if (getListAdapter() instanceof EntityListAdapter) {
+            ((EntityListAdapter) getListAdapter()).setEntities(entities);
+          }
+        }
+      }
+    });
+  }
+  
+  /**
+   * Returns the observed query, which is the entities query with a limit
+   * which covers all loaded pages.
+   * 
+   * @return the observed query or null if the entities are not observed
+   */
+  private SQLQuery getObservedQuery() {
+    SQLQuery query = getEntitiesQuery();
+    if (query == null || query.getLimit() <= 0 || entities == null
+            || entities.size() <= query.getLimit()) {
+      return query;
+    }
+    
+    SQLQuery pages = query.withOffset(query.getOffset());
+    pages.setLimit(entities.size());
+    return pages;
   }
   
   /**
@@ -188,6 +378,56 @@ public abstract class EntityListFragment extends ListFragment implements Nameabl
    */
   protected abstract void loadEntities();
 
+  /**
+   * Returns the SQL query which selects the entities of the list fragment.
+   * If the query and the DAO are not null, the entities are observed
+   * while the fragment is started, so the list is updated after each write
+   * to the entity table. Returns per default null.
+   *
+   * @return the entities query or null if the entities are not observed
+   */
+  protected SQLQuery getEntitiesQuery() {
+    return null;
+  }
+
+  /**
+   * Returns the query of the next page, which is prefetched if the user
+   * scrolls within the prefetch distance to the end of the list and is
+   * loaded and appended if the user reaches the end of the list.
+   * Per default, if the entities query has a limit, the next page starts
+   * after the loaded entities. Returns null if all entities are loaded.
+   *
+   * @return the query of the next page or null if no page should be prefetched
+   */
+  protected SQLQuery getNextPageQuery() {
+    SQLQuery query = getEntitiesQuery();
+    if (query == null || query.getLimit() <= 0 || entities == null
+            || entities.isEmpty() || entities.size() % query.getLimit() != 0) {
+      return null;
+    }
+    return query.withOffset(query.getOffset() + entities.size());
+  }
+
+  /**
+   * Returns the count of items before the end of the list, at which the
+   * next page is prefetched.
+   *
+   * @return the prefetch distance
+   */
+  protected int getPrefetchDistance() {
+    return DEFAULT_PREFETCH_DISTANCE;
+  }
+
+  /**
+   * Returns the DAO which is used to observe the entities query.
+   * Returns per default null.
+   *
+   * @return the data access object
+   */
+  protected DAO getDAO() {
+    return null;
+  }
+
   /**
    * Returns the EntityListAdapter implementation which should be used for the
    * list fragment.
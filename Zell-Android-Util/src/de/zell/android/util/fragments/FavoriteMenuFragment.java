@@ -21,9 +21,13 @@ import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import de.zell.android.util.R;
+import de.zell.android.util.db.AnnotatedCursorExtractor;
+import de.zell.android.util.db.AsyncDBListReader;
 import de.zell.android.util.db.DAO;
+import de.zell.android.util.db.LiveQuery;
 import de.zell.android.util.db.SQLQuery;
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * Represents the favorite options menu which will be shown in the action bar
@@ -42,6 +46,11 @@ public abstract class FavoriteMenuFragment extends ActionBarManagerFragment {
    * The flag indicates whether the favorite is set or not.
    */
   protected boolean favorited;
+  
+  /**
+   * The live query which observes the favorite state of the entity.
+   */
+  private LiveQuery liveQuery;
 
   @Override
   public void onCreate(Bundle savedInstanceState) {
@@ -78,6 +87,62 @@ public abstract class FavoriteMenuFragment extends ActionBarManagerFragment {
    * @return the data access object
    */
   protected abstract DAO getDAO();
+  
+  /**
+   * Returns the SQLQuery which selects the current entity. If the query is
+   * not null, the favorite state is observed while the fragment is started,
+   * so the favorite icon follows each write to the entity table.
+   * Returns per default null.
+   * 
+   * @return the SQLQuery or null if the favorite state is not observed
+   */
+  protected SQLQuery getFavoriteSelectSQLQuery() {
+    return null;
+  }
+  
+  /**
+   * Returns whether the given entity, which was selected with the favorite
+   * select query, is favored. Per default the DBColumn annotated field of
+   * the favorite column is read.
+   * 
+   * @param entity the selected entity
+   * @return true if the entity is favored, false otherwise
+   */
+  protected boolean isFavorite(Object entity) {
+    Object value = AnnotatedCursorExtractor.getValue(entity, getFavoriteColumnName());
+    if (value instanceof Boolean) {
+      return (Boolean) value;
+    }
+    if (value instanceof Number) {
+      return ((Number) value).intValue() != 0;
+    }
+    return value != null && !"0".equals(value.toString());
+  }
+
+  @Override
+  public void onStart() {
+    super.onStart();
+    SQLQuery query = getFavoriteSelectSQLQuery();
+    if (query != null) {
+      liveQuery = getDAO().observe(query, new AsyncDBListReader.PostExecuteJob() {
+        @Override
+        public void doJob(List result) {
+          if (result != null && !result.isEmpty()) {
+            setFavIcon(isFavorite(result.get(0)));
+          }
+        }
+      });
+    }
+  }
+
+  @Override
+  public void onStop() {
+    super.onStop();
+    if (liveQuery != null) {
+      liveQuery.cancel();
+      liveQuery = null;
+    }
+  }
 
   @Override
   public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
@@ -100,6 +165,12 @@ public abstract class FavoriteMenuFragment extends ActionBarManagerFragment {
     getActivity().invalidateOptionsMenu();
   }
 
+  @Override
+  public void onPause() {
+    super.onPause();
+    getDAO().flushCoalescedUpdates();
+  }
+
   @Override
   public void onPrepareOptionsMenu(Menu menu) {
     super.onPrepareOptionsMenu(menu);
@@ -114,7 +185,7 @@ public abstract class FavoriteMenuFragment extends ActionBarManagerFragment {
       setFavIcon(!favItem.isChecked());
       Integer fav = favItem.isChecked() ? 0 : 1;
       query.addValues(getFavoriteColumnName(), fav.toString());
-      getDAO().updateEntity(query);
+      getDAO().coalesceUpdate(query);
     }
 
     return super.onOptionsItemSelected(favItem);